@@ -0,0 +1,28 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+def lastLine = { File f -> f.withReader{ r->r.eachLine{ it } } }
+
+File combined = new File(basedir, "target/apilyzer-aggregate.txt");
+assert combined.isFile()
+assert lastLine(combined)=="Total : 1"
+
+// the client's reference to the core API is resolved across modules
+File core = new File(basedir, "core/target/apilyzer.txt");
+assert core.isFile()
+assert lastLine(core)=="Total : 0"
+File client = new File(basedir, "client/target/apilyzer.txt");
+assert client.isFile()
+assert lastLine(client)=="Total : 1"
+assert client.text.contains("apilyzer.it.client.internal.Connection")
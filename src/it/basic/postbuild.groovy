@@ -16,3 +16,9 @@ File reportFile = new File(basedir, "target/apilyzer.txt");
 assert reportFile.isFile()
 def last=reportFile.withReader{ r->r.eachLine{ it } }
 assert last=="Total : 0"
+
+File indexFile = new File(basedir, "target/apilyzer.idx");
+assert indexFile.isFile()
+
+File fingerprintFile = new File(basedir, "target/apilyzer-test-analyze.fingerprint");
+assert fingerprintFile.isFile()
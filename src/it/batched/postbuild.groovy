@@ -0,0 +1,25 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+def problems = { name ->
+  def lines = new File(basedir, "app/target/" + name).readLines()
+  lines.subList(lines.indexOf("Problems : ") + 1, lines.size()).findAll { it.trim() }.sort()
+}
+
+// both modes load the app's own Widget, rather than the one in the lib jar
+def unbatchedProblems = problems("apilyzer-unbatched.txt")
+assert unbatchedProblems.last() == "Total : 2"
+assert unbatchedProblems.any { it.contains("net.revelc.code.apilyzer.it.internal.Impl") }
+assert !unbatchedProblems.any { it.contains("net.revelc.code.apilyzer.it.lib.Helper") }
+assert problems("apilyzer-batched.txt") == unbatchedProblems
@@ -21,3 +21,7 @@ File reportFileStableEvolving = new File(basedir, "target/apilyzer-stable-evolvi
 assert reportFileStableEvolving.isFile()
 def lastStableEvolving=reportFileStableEvolving.withReader{ r->r.eachLine{ it } }
 assert lastStableEvolving=="Total : 305"
+
+evaluate(new File(perfScript))
+checkPerformance("apilyzer-stable-metrics.properties")
+checkPerformance("apilyzer-stable-evolving-metrics.properties")
@@ -16,3 +16,6 @@ File reportFile = new File(basedir, "target/apilyzer.txt");
 assert reportFile.isFile()
 def last=reportFile.withReader{ r->r.eachLine{ it } }
 assert last=="Total : 213"
+
+evaluate(new File(perfScript))
+checkPerformance("apilyzer-metrics.properties")
@@ -0,0 +1,23 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+File manifestFile = new File(basedir, "target/internal.manifest");
+assert manifestFile.isFile()
+
+File reportFile = new File(basedir, "target/apilyzer.txt");
+assert reportFile.isFile()
+def lines=reportFile.readLines()
+assert lines.contains("  net.revelc.code.apilyzer.it.api.Widget")
+assert !lines.contains("  net.revelc.code.apilyzer.it.internal.Impl")
+assert lines.last()=="Total : 0"
@@ -0,0 +1,79 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+// Compares the metrics written by the analyze goal (see its metricsFile parameter) with a stored
+// reference. The counts in the reference, such as the numbers of public API types and problems,
+// must be measured exactly, and the check fails if any phase took, or the peak heap grew, more than
+// the tolerance above the reference. This script is evaluated by the postbuild scripts of the
+// larger integration tests, with these variables set in the invoker configuration of the plugin's
+// pom:
+//
+//   perfReferenceDirectory - the directory holding a reference directory for each test
+//   perfTolerance - the allowed growth, as a fraction of the reference (e.g. 0.5 for 50%)
+//   perfUpdate - "true" to store the measured metrics as the new references, instead of comparing
+//
+// The committed references only hold the counts, which do not depend on the machine. Timings and
+// heap usage do, so their references should be stored on the machine which runs the comparison,
+// for example by running the integration tests of the previous release with
+// -Dapilyzer.perfUpdate=true.
+
+// phases shorter than this are too noisy to compare
+def minimumMillis = 200
+
+checkPerformance = { String metricsName ->
+  File metricsFile = new File(basedir, "target/" + metricsName)
+  assert metricsFile.isFile()
+  def measured = new Properties()
+  metricsFile.withInputStream { measured.load(it) }
+
+  File referenceFile = new File(new File(perfReferenceDirectory, basedir.name), metricsName)
+  if (perfUpdate == "true") {
+    referenceFile.parentFile.mkdirs()
+    referenceFile.bytes = metricsFile.bytes
+    println "Stored performance reference " + referenceFile
+    return
+  }
+  assert referenceFile.isFile() : "No performance reference " + referenceFile + "; run with -Dapilyzer.perfUpdate=true to store one"
+  def reference = new Properties()
+  referenceFile.withInputStream { reference.load(it) }
+
+  double tolerance = Double.parseDouble(perfTolerance)
+  def regressions = []
+  reference.stringPropertyNames().sort().each { key ->
+    long expected = Long.parseLong(reference.getProperty(key))
+    String actualValue = measured.getProperty(key)
+    boolean count = !key.endsWith(".millis") && !key.endsWith(".bytes")
+    if (actualValue == null) {
+      if (count) {
+        regressions << key + " was not measured"
+      }
+      return
+    }
+    long actual = Long.parseLong(actualValue)
+    println String.format("%-20s reference %12d measured %12d", key, expected, actual)
+    if (count) {
+      if (actual != expected) {
+        regressions << key + " changed from " + expected + " to " + actual
+      }
+    } else if (key.endsWith(".millis") && expected < minimumMillis) {
+      return
+    } else if (actual > expected * (1 + tolerance)) {
+      regressions << key + " grew from " + expected + " to " + actual
+    }
+  }
+  if (!reference.stringPropertyNames().any { it.endsWith(".millis") || it.endsWith(".bytes") }) {
+    println "WARNING: no timing or heap reference in " + referenceFile + "; only the counts were compared"
+  }
+  assert regressions.isEmpty() : "Performance regressions in " + metricsName + ": " + regressions
+}
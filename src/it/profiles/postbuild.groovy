@@ -0,0 +1,35 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+File defaultReport = new File(basedir, "target/apilyzer.txt");
+assert !defaultReport.exists()
+
+File apiReport = new File(basedir, "target/apilyzer-api.txt");
+assert apiReport.isFile()
+def apiLines=apiReport.readLines()
+assert apiLines.contains("  net.revelc.code.apilyzer.it.api.Widget")
+assert !apiLines.contains("  net.revelc.code.apilyzer.it.internal.Impl")
+assert apiLines.last()=="Total : 1"
+assert new File(basedir, "target/apilyzer-api.idx").isFile()
+
+File allReport = new File(basedir, "target/apilyzer-all.txt");
+assert allReport.isFile()
+def allLines=allReport.readLines()
+assert allLines.contains("  net.revelc.code.apilyzer.it.internal.Impl")
+assert allLines.last()=="Total : 0"
+assert new File(basedir, "target/apilyzer-all.idx").isFile()
+
+assert new File(basedir, "target/apilyzer-api.manifest").isFile()
+assert !new File(basedir, "target/apilyzer-all.manifest").exists()
+assert new File(basedir, "target/all-types.manifest").isFile()
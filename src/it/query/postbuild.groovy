@@ -0,0 +1,29 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+File indexFile = new File(basedir, "target/apilyzer.idx");
+assert indexFile.isFile()
+
+// the query goal reads the index written by the analysis, and lists only the matching type
+def log=new File(basedir, "build.log").readLines()
+def api="net.revelc.code.apilyzer.it.api."
+def query=log.dropWhile { !it.contains(":query (default-cli)") }
+assert !query.isEmpty()
+def type="com.google.common.collect.ImmutableList"
+assert query.any { it.endsWith("] " + type + " is exposed by 3 API members:") }
+assert query.any { it.endsWith("]   " + api + "Registry names(...)") }
+assert query.any { it.endsWith("]   " + api + "Registry register(...)") }
+assert query.any { it.endsWith("]   " + api + "Gadget sizes") }
+assert !query.any { it.contains("com.google.common.base.Optional") }
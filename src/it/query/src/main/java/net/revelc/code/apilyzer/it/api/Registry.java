@@ -0,0 +1,29 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.revelc.code.apilyzer.it.api;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+
+public class Registry {
+  public Optional<String> first() {
+    return null;
+  }
+
+  public ImmutableList<String> names() {
+    return null;
+  }
+
+  public void register(ImmutableList<String> names) {}
+}
@@ -0,0 +1,28 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+def metrics = { module ->
+  def properties = new Properties()
+  new File(basedir, module + "/target/apilyzer-metrics.properties").withInputStream { properties.load(it) }
+  properties
+}
+
+// beta reuses the loader of alpha, which has the same dependencies
+assert metrics("alpha").getProperty("dependencyLoader.reused") == "0"
+assert metrics("beta").getProperty("dependencyLoader.reused") == "1"
+
+// no project after beta declares the same dependencies, so their loader is closed before gamma
+def gamma = metrics("gamma")
+assert gamma.getProperty("dependencyLoader.reused") == "0"
+assert gamma.getProperty("dependencyLoaders.open") == "1"
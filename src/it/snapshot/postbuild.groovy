@@ -0,0 +1,42 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+// the first build compares the v1 API with its own snapshot
+File snapshotFile = new File(basedir, "target/v1/apilyzer.snapshot");
+assert snapshotFile.isFile()
+
+File diffFile = new File(basedir, "target/v1/apilyzer-diff.txt");
+assert diffFile.isFile()
+def lines=diffFile.readLines()
+assert lines.contains("Added : 0")
+assert lines.contains("Removed : 0")
+assert lines.last()=="Newly leaking : 0"
+
+// the second build compares the v2 API with the v1 snapshot
+assert new File(basedir, "target/v2/apilyzer.snapshot").isFile()
+
+diffFile = new File(basedir, "target/v2/apilyzer-diff.txt");
+assert diffFile.isFile()
+lines=diffFile.readLines()
+def api="  net.revelc.code.apilyzer.it.api."
+def section={ title ->
+  lines.drop(lines.indexOf(title + " : ") + 1).takeWhile { it.startsWith("  ") }
+}
+assert section("Added")==[api + "Gizmo"]
+assert section("Removed")==[api + "Gadget", api + "Helper", api + "Widget: int size()"]
+assert section("Newly leaking")==[api + "Widget: net.revelc.code.apilyzer.it.api.Helper helper()"
+    + " leaks net.revelc.code.apilyzer.it.api.Helper"]
+assert lines.contains("Added : 1")
+assert lines.contains("Removed : 3")
+assert lines.last()=="Newly leaking : 1"
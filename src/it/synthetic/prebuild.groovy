@@ -0,0 +1,46 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+// Generates a large public API, with a known number of problems, so analysis performance can be
+// measured without downloading anything. Each API class references another API class, a JDK type
+// and, for every fifth class, a class from the corresponding internal package.
+
+packages = 100
+classesPerPackage = 20
+
+File sources = new File(basedir, "target/generated-sources/synthetic")
+String base = "net.revelc.code.apilyzer.it.synthetic"
+for (int p = 0; p < packages; p++) {
+  File apiDir = new File(sources, (base + ".api.p" + p).replace('.', '/'))
+  File internalDir = new File(sources, (base + ".internal.p" + p).replace('.', '/'))
+  apiDir.mkdirs()
+  internalDir.mkdirs()
+  for (int c = 0; c < classesPerPackage; c++) {
+    int next = (c + 1) % classesPerPackage
+    String api = "package " + base + ".api.p" + p + ";\n\n" +
+        "public class Api" + c + " {\n" +
+        "  public int count;\n" +
+        "  public Api" + next + " next() { return null; }\n" +
+        "  public java.util.List<String> names() { return null; }\n" +
+        (c % 5 == 0 ? "  public " + base + ".internal.p" + p + ".Impl" + c + " impl() { return null; }\n" : "") +
+        "}\n"
+    new File(apiDir, "Api" + c + ".java").text = api
+    String internal = "package " + base + ".internal.p" + p + ";\n\n" +
+        "public class Impl" + c + " {\n" +
+        "  public " + base + ".api.p" + p + ".Api" + c + " api() { return null; }\n" +
+        "}\n"
+    new File(internalDir, "Impl" + c + ".java").text = internal
+  }
+}
+return true
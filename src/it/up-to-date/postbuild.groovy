@@ -0,0 +1,26 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+assert new File(basedir, "target/apilyzer-api.fingerprint").isFile()
+assert new File(basedir, "target/apilyzer-all.fingerprint").isFile()
+assert !new File(basedir, "target/apilyzer.fingerprint").exists()
+
+def apiLines=new File(basedir, "target/apilyzer-api.txt").readLines()
+assert apiLines.last()=="Total : 1"
+def allLines=new File(basedir, "target/apilyzer-all.txt").readLines()
+assert allLines.last()=="Total : 0"
+
+// the first build analyzes, and the second reuses the result of both executions
+def log=new File(basedir, "build.log").text
+assert log.count("APILyzer inputs are unchanged; reusing the previous analysis")==2
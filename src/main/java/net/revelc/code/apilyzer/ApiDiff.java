@@ -0,0 +1,127 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.apilyzer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import net.revelc.code.apilyzer.ApiSnapshot.Member;
+
+/**
+ * The differences between two snapshots of a public API. Types and members are identified by name
+ * and signature, and are described as {@code type} or {@code type: signature}.
+ */
+public class ApiDiff {
+
+  private final List<String> added = new ArrayList<>();
+  private final List<String> removed = new ArrayList<>();
+  private final List<String> newlyLeaking = new ArrayList<>();
+
+  private ApiDiff() {}
+
+  /**
+   * Compare a previous snapshot of an API with the current one, by merging their sorted types and
+   * members. A member is newly leaking if it references a type which is neither in the public API
+   * nor allowed, and which the same member did not already leak in the previous snapshot.
+   */
+  public static ApiDiff compare(ApiSnapshot previous, ApiSnapshot current) {
+    ApiDiff diff = new ApiDiff();
+    merge(previous.types(), current.types(), (type, inPrevious, inCurrent) -> {
+      if (!inPrevious) {
+        diff.added.add(type);
+      } else if (!inCurrent) {
+        diff.removed.add(type);
+      }
+      Map<String, Member> previousMembers = previous.members(type);
+      Map<String, Member> currentMembers = current.members(type);
+      merge(previousMembers.keySet(), currentMembers.keySet(),
+          (signature, memberInPrevious, memberInCurrent) -> {
+            String description = type + ": " + signature;
+            if (!memberInPrevious) {
+              if (inPrevious) {
+                diff.added.add(description);
+              }
+            } else if (!memberInCurrent) {
+              if (inCurrent) {
+                diff.removed.add(description);
+              }
+              return;
+            }
+            SortedSet<String> leaks = new TreeSet<>(currentMembers.get(signature).leaks());
+            if (memberInPrevious) {
+              leaks.removeAll(previousMembers.get(signature).leaks());
+            }
+            if (!leaks.isEmpty()) {
+              diff.newlyLeaking.add(description + " leaks " + String.join(", ", leaks));
+            }
+          });
+    });
+    return diff;
+  }
+
+  private interface MergeVisitor {
+    void visit(String name, boolean inPrevious, boolean inCurrent);
+  }
+
+  // both collections must be iterated in sorted order
+  private static void merge(Iterable<String> previous, Iterable<String> current,
+      MergeVisitor visitor) {
+    Iterator<String> p = previous.iterator();
+    Iterator<String> c = current.iterator();
+    String nextPrevious = p.hasNext() ? p.next() : null;
+    String nextCurrent = c.hasNext() ? c.next() : null;
+    while (nextPrevious != null || nextCurrent != null) {
+      int cmp = nextPrevious == null ? 1
+          : nextCurrent == null ? -1 : nextPrevious.compareTo(nextCurrent);
+      if (cmp == 0) {
+        visitor.visit(nextCurrent, true, true);
+        nextPrevious = p.hasNext() ? p.next() : null;
+        nextCurrent = c.hasNext() ? c.next() : null;
+      } else if (cmp < 0) {
+        visitor.visit(nextPrevious, true, false);
+        nextPrevious = p.hasNext() ? p.next() : null;
+      } else {
+        visitor.visit(nextCurrent, false, true);
+        nextCurrent = c.hasNext() ? c.next() : null;
+      }
+    }
+  }
+
+  /**
+   * Returns the types, and the members of previously existing types, which are new.
+   */
+  public List<String> added() {
+    return Collections.unmodifiableList(added);
+  }
+
+  /**
+   * Returns the types, and the members of still existing types, which were removed.
+   */
+  public List<String> removed() {
+    return Collections.unmodifiableList(removed);
+  }
+
+  /**
+   * Returns the members which leak types they did not leak before, with those types.
+   */
+  public List<String> newlyLeaking() {
+    return Collections.unmodifiableList(newlyLeaking);
+  }
+
+}
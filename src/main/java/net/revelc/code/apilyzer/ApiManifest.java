@@ -0,0 +1,99 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.apilyzer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+/**
+ * The names of the types in a resolved public API, published so that projects using the API can
+ * allow exactly those types without repeating its definition. The names are stored sorted, each as
+ * the length of the prefix it shares with the previous name followed by the rest of the name.
+ */
+public class ApiManifest {
+
+  private static final int MAGIC = 0x4150494d; // "APIM"
+  private static final int VERSION = 1;
+
+  private ApiManifest() {
+    // do not permit instantiation
+  }
+
+  /**
+   * Write the given public API type names to the given file.
+   */
+  public static void write(Path file, Stream<String> names) throws IOException {
+    SortedSet<String> sorted = new TreeSet<>();
+    names.forEach(sorted::add);
+    try (DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(sorted.size());
+      String previous = "";
+      for (String name : sorted) {
+        int shared = 0;
+        int max = Math.min(previous.length(), name.length());
+        while (shared < max && previous.charAt(shared) == name.charAt(shared)) {
+          shared++;
+        }
+        out.writeShort(shared);
+        out.writeUTF(name.substring(shared));
+        previous = name;
+      }
+    }
+  }
+
+  /**
+   * Read the public API type names from a file previously written with
+   * {@link #write(Path, Stream)}, as a set for constant time lookups.
+   */
+  public static Set<String> read(Path file) throws IOException {
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      if (in.readInt() != MAGIC) {
+        throw new IOException("Not an APILyzer API manifest: " + file);
+      }
+      int version = in.readInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported API manifest version " + version + ": " + file);
+      }
+      int count = in.readInt();
+      Set<String> names = new HashSet<>(count * 4 / 3 + 1);
+      String previous = "";
+      for (int i = 0; i < count; i++) {
+        int shared = in.readUnsignedShort();
+        if (shared > previous.length()) {
+          throw new IOException("Corrupt API manifest: " + file);
+        }
+        previous = previous.substring(0, shared) + in.readUTF();
+        names.add(previous);
+      }
+      return Collections.unmodifiableSet(names);
+    }
+  }
+
+}
@@ -0,0 +1,198 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.apilyzer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The surface of a public API at one point in time: its types, the signatures of their members,
+ * and the types referenced by each member, including those which are not allowed. Snapshots can be
+ * stored, and compared with {@link ApiDiff} without loading the classes they were taken from.
+ */
+public class ApiSnapshot {
+
+  private static final int MAGIC = 0x41504953; // "APIS"
+  private static final int VERSION = 1;
+
+  /**
+   * A member of a public API type.
+   */
+  public static class Member {
+
+    private final SortedSet<String> references;
+    private final SortedSet<String> leaks;
+
+    Member(Collection<String> references, Collection<String> leaks) {
+      this.references = Collections.unmodifiableSortedSet(new TreeSet<>(references));
+      this.leaks = Collections.unmodifiableSortedSet(new TreeSet<>(leaks));
+    }
+
+    /**
+     * Returns the names of the types referenced by this member.
+     */
+    public SortedSet<String> references() {
+      return references;
+    }
+
+    /**
+     * Returns the names of the referenced types which are neither in the public API nor allowed.
+     */
+    public SortedSet<String> leaks() {
+      return leaks;
+    }
+
+  }
+
+  private final TreeMap<String, TreeMap<String, Member>> types = new TreeMap<>();
+
+  void addType(String type) {
+    types.computeIfAbsent(type, k -> new TreeMap<>());
+  }
+
+  void addMember(String type, String signature, Collection<String> references,
+      Collection<String> leaks) {
+    types.computeIfAbsent(type, k -> new TreeMap<>()).put(signature,
+        new Member(references, leaks));
+  }
+
+  /**
+   * Returns the sorted names of the public API types.
+   */
+  public SortedSet<String> types() {
+    return Collections.unmodifiableSortedSet(new TreeSet<>(types.keySet()));
+  }
+
+  /**
+   * Returns the members of the given type, sorted by signature, or an empty map if the type is not
+   * part of this snapshot.
+   */
+  public SortedMap<String, Member> members(String type) {
+    TreeMap<String, Member> members = types.get(type);
+    return members == null ? Collections.emptySortedMap()
+        : Collections.unmodifiableSortedMap(members);
+  }
+
+  /**
+   * Write this snapshot to the given file. All names and signatures are stored once in a string
+   * table, and each entry refers to them by position.
+   */
+  public void write(Path file) throws IOException {
+    Map<String, Integer> ids = new HashMap<>();
+    List<String> strings = new ArrayList<>();
+    for (Map.Entry<String, TreeMap<String, Member>> type : types.entrySet()) {
+      intern(type.getKey(), ids, strings);
+      for (Map.Entry<String, Member> member : type.getValue().entrySet()) {
+        intern(member.getKey(), ids, strings);
+        member.getValue().references.forEach(s -> intern(s, ids, strings));
+        member.getValue().leaks.forEach(s -> intern(s, ids, strings));
+      }
+    }
+
+    try (DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(strings.size());
+      for (String s : strings) {
+        out.writeUTF(s);
+      }
+      out.writeInt(types.size());
+      for (Map.Entry<String, TreeMap<String, Member>> type : types.entrySet()) {
+        out.writeInt(ids.get(type.getKey()));
+        out.writeInt(type.getValue().size());
+        for (Map.Entry<String, Member> member : type.getValue().entrySet()) {
+          out.writeInt(ids.get(member.getKey()));
+          writeIds(out, member.getValue().references, ids);
+          writeIds(out, member.getValue().leaks, ids);
+        }
+      }
+    }
+  }
+
+  private static void intern(String s, Map<String, Integer> ids, List<String> strings) {
+    if (!ids.containsKey(s)) {
+      ids.put(s, strings.size());
+      strings.add(s);
+    }
+  }
+
+  private static void writeIds(DataOutputStream out, Collection<String> names,
+      Map<String, Integer> ids) throws IOException {
+    out.writeInt(names.size());
+    for (String name : names) {
+      out.writeInt(ids.get(name));
+    }
+  }
+
+  /**
+   * Read a snapshot previously written with {@link #write(Path)}.
+   */
+  public static ApiSnapshot read(Path file) throws IOException {
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      if (in.readInt() != MAGIC) {
+        throw new IOException("Not an APILyzer API snapshot: " + file);
+      }
+      int version = in.readInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported API snapshot version " + version + ": " + file);
+      }
+      String[] strings = new String[in.readInt()];
+      for (int i = 0; i < strings.length; i++) {
+        strings[i] = in.readUTF();
+      }
+      ApiSnapshot snapshot = new ApiSnapshot();
+      int typeCount = in.readInt();
+      for (int i = 0; i < typeCount; i++) {
+        String type = strings[in.readInt()];
+        snapshot.addType(type);
+        int memberCount = in.readInt();
+        for (int j = 0; j < memberCount; j++) {
+          String signature = strings[in.readInt()];
+          List<String> references = readNames(in, strings);
+          List<String> leaks = readNames(in, strings);
+          snapshot.addMember(type, signature, references, leaks);
+        }
+      }
+      return snapshot;
+    }
+  }
+
+  private static List<String> readNames(DataInputStream in, String[] strings) throws IOException {
+    int count = in.readInt();
+    List<String> names = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      names.add(strings[in.readInt()]);
+    }
+    return names;
+  }
+
+}
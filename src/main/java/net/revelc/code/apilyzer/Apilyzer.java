@@ -19,13 +19,23 @@ import java.lang.reflect.AnnotatedElement;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import net.revelc.code.apilyzer.events.CheckClassEvent;
 import net.revelc.code.apilyzer.problems.Problem;
 import net.revelc.code.apilyzer.problems.ProblemReporter;
-import net.revelc.code.apilyzer.util.ClassUtils;
+import net.revelc.code.apilyzer.problems.ProblemType;
+import net.revelc.code.apilyzer.util.JdkExports;
 
 /**
  * The entry point to this library.
@@ -33,9 +43,19 @@ import net.revelc.code.apilyzer.util.ClassUtils;
 public class Apilyzer {
 
   private final ProblemReporter problemReporter;
+  private final ProblemVisitor problemVisitor = new ProblemVisitor();
   private final PatternSet allowsPs;
   private final boolean ignoreDeprecated;
   private final PublicApi publicApi;
+  private long problemCount = 0;
+  private ReferenceIndex referenceIndex;
+  private JdkExports jdkExports;
+  private Consumer<Problem> problemSink;
+  private Set<String> rejected;
+  private boolean checkSupertypes = false;
+  private TypeGraph typeGraph;
+  private MemberCache memberCache;
+  private Set<String> allowedTypes = Collections.emptySet();
 
   /**
    * Analyze a given public API definition to ensure it exposes only types available in itself and
@@ -45,15 +65,69 @@ public class Apilyzer {
       justification = "false positive; publicApi is immutable")
   public Apilyzer(PublicApi publicApi, List<String> allows, boolean ignoreDeprecated,
       Consumer<Problem> problemConsumer) {
-    this.problemReporter = new ProblemReporter(problemConsumer);
+    this.problemSink = problemConsumer;
+    this.problemReporter = new ProblemReporter(problem -> {
+      problemCount++;
+      problemSink.accept(problem);
+    });
     this.allowsPs = new PatternSet(allows);
     this.ignoreDeprecated = ignoreDeprecated;
     this.publicApi = publicApi;
   }
 
+  /**
+   * Record every type referenced by the public API into the given index while checking.
+   */
+  @SuppressFBWarnings(value = "EI_EXPOSE_REP2",
+      justification = "the index is intentionally shared with the caller to collect references")
+  public void setReferenceIndex(ReferenceIndex referenceIndex) {
+    this.referenceIndex = referenceIndex;
+  }
+
+  /**
+   * Use the given set of JDK exports, instead of computing it without a cache directory.
+   */
+  public void setJdkExports(JdkExports jdkExports) {
+    this.jdkExports = jdkExports;
+  }
+
+  /**
+   * Also check that no public API class extends or implements a type which is neither in the
+   * public API nor allowed, directly or through its other supertypes.
+   */
+  public void setCheckSupertypes(boolean checkSupertypes) {
+    this.checkSupertypes = checkSupertypes;
+  }
+
+  /**
+   * Look up the members of the checked classes in the given cache, which may be shared with other
+   * analyzers checking the same classes, instead of reflecting on each class again.
+   */
+  @SuppressFBWarnings(value = "EI_EXPOSE_REP2",
+      justification = "the cache is intentionally shared between analyzers")
+  public void setMemberCache(MemberCache memberCache) {
+    this.memberCache = memberCache;
+  }
+
+  /**
+   * Also allow the types with the given names, such as those read from the {@link ApiManifest} of
+   * another project's public API, in addition to those matching the allowed patterns.
+   */
+  @SuppressFBWarnings(value = "EI_EXPOSE_REP2",
+      justification = "the names are only read, and may be shared between analyzers")
+  public void setAllowedTypes(Set<String> allowedTypes) {
+    this.allowedTypes = allowedTypes;
+  }
+
+  private TypeGraph typeGraph() {
+    if (typeGraph == null) {
+      typeGraph = new TypeGraph(this::isOk);
+    }
+    return typeGraph;
+  }
+
   private boolean allowedExternalApi(String fqName) {
-    // TODO: make default allows configurable?
-    if (fqName.startsWith("java.")) {
+    if (jdkExports.exports(fqName) || allowedTypes.contains(fqName)) {
       return true;
     }
     return allowsPs.anyMatch(fqName);
@@ -74,22 +148,218 @@ public class Apilyzer {
     }
 
     String fqName = clazz.getName();
-    return publicApi.contains(fqName) || allowedExternalApi(fqName);
+    if (publicApi.contains(fqName) || allowedExternalApi(fqName)) {
+      return true;
+    }
+    if (rejected != null) {
+      rejected.add(fqName);
+    }
+    return false;
+  }
+
+  private boolean isOk(Class<?> clazz, Class<?> contextClass, String memberName) {
+    if (referenceIndex != null) {
+      referenceIndex.add(clazz, contextClass, memberName);
+    }
+    return isOk(clazz);
+  }
+
+  /**
+   * Receives the members of the classes being visited, each followed by the types it references.
+   */
+  private interface ApiVisitor {
+
+    /**
+     * Returns whether deprecated classes and members which are ignored are visited anyway, with
+     * all of their references reported as allowed.
+     */
+    boolean visitsIgnored();
+
+    /**
+     * Start a member of the given class, whose references follow. The class itself is the member
+     * which references its exposed supertypes, and an inner class is the member which references
+     * itself.
+     */
+    void member(Class<?> clazz, AnnotatedElement member, String signature);
+
+    /**
+     * A type referenced by the current member, and whether it is in the public API or allowed.
+     */
+    void reference(ProblemType kind, Class<?> type, boolean ok);
+
+  }
+
+  /**
+   * Reports the references found while checking which are neither in the public API nor allowed.
+   */
+  private class ProblemVisitor implements ApiVisitor {
+
+    private Class<?> clazz;
+    private AnnotatedElement member;
+
+    @Override
+    public boolean visitsIgnored() {
+      return false;
+    }
+
+    @Override
+    public void member(Class<?> clazz, AnnotatedElement member, String signature) {
+      this.clazz = clazz;
+      this.member = member;
+    }
+
+    @Override
+    public void reference(ProblemType kind, Class<?> type, boolean ok) {
+      if (ok) {
+        return;
+      }
+      switch (kind) {
+        case FIELD:
+          problemReporter.field(clazz, (Field) member);
+          break;
+        case CTOR_PARAM:
+          problemReporter.constructorParameter(clazz, type);
+          break;
+        case CTOR_EXCEPTION:
+          problemReporter.constructorException(clazz, type);
+          break;
+        case METHOD_RETURN:
+          problemReporter.methodReturn(clazz, (Method) member);
+          break;
+        case METHOD_PARAM:
+          problemReporter.methodParameter(clazz, (Method) member, type);
+          break;
+        case METHOD_EXCEPTION:
+          problemReporter.methodException(clazz, (Method) member, type);
+          break;
+        case INNER_CLASS:
+          problemReporter.innerClass(clazz, type);
+          break;
+        case SUPERCLASS:
+          problemReporter.superclass(clazz, type);
+          break;
+        case INTERFACE:
+          problemReporter.interfaceType(clazz, type);
+          break;
+        default:
+          throw new IllegalArgumentException("Unexpected reference kind " + kind);
+      }
+    }
+
+  }
+
+  /**
+   * Records each member of the public API types, with the types it references and those among them
+   * which the check would report, into a snapshot. The members of other types reached by the check,
+   * such as inner classes outside the public API, are only recorded as leaks of the members which
+   * reference those types.
+   */
+  private static class SnapshotVisitor implements ApiVisitor {
+
+    private final ApiSnapshot snapshot;
+    private final PublicApi publicApi;
+    private String currentType;
+    private String signature;
+    private final Set<String> references = new TreeSet<>();
+    private final Set<String> leaks = new TreeSet<>();
+
+    SnapshotVisitor(ApiSnapshot snapshot, PublicApi publicApi) {
+      this.snapshot = snapshot;
+      this.publicApi = publicApi;
+    }
+
+    @Override
+    public boolean visitsIgnored() {
+      return true;
+    }
+
+    @Override
+    public void member(Class<?> clazz, AnnotatedElement member, String signature) {
+      finish();
+      if (publicApi.contains(clazz.getName())) {
+        this.currentType = clazz.getName();
+        this.signature = signature;
+      }
+    }
+
+    @Override
+    public void reference(ProblemType kind, Class<?> type, boolean ok) {
+      if (currentType == null) {
+        return;
+      }
+      while (type.isArray()) {
+        type = type.getComponentType();
+      }
+      if (type.isPrimitive()) {
+        return;
+      }
+      references.add(type.getName());
+      if (!ok) {
+        leaks.add(type.getName());
+      }
+    }
+
+    // record the current member, if any
+    void finish() {
+      if (currentType != null) {
+        snapshot.addMember(currentType, signature, references, leaks);
+        currentType = null;
+        references.clear();
+        leaks.clear();
+      }
+    }
+
   }
 
   private boolean checkClass(Class<?> clazz, Set<Class<?>> innerChecked) {
+    return visitClass(clazz, innerChecked, problemVisitor);
+  }
+
+  // check a reference, unless its member is ignored, and pass it to the visitor
+  private boolean reference(ApiVisitor visitor, ProblemType kind, Class<?> type,
+      Class<?> contextClass, String memberName, boolean ignored) {
+    boolean ok = ignored || isOk(type, contextClass, memberName);
+    visitor.reference(kind, type, ok);
+    return ok;
+  }
+
+  private boolean visitClass(Class<?> clazz, Set<Class<?>> innerChecked, ApiVisitor visitor) {
 
     boolean ok = true;
 
-    if (deprecatedToIgnore(clazz)) {
+    boolean ignoredClass = deprecatedToIgnore(clazz);
+    if (ignoredClass && !visitor.visitsIgnored()) {
       return true;
     }
 
+    CheckClassEvent event = new CheckClassEvent();
+    event.begin();
+    long problemsBefore = problemCount;
+
     // TODO: check generic type parameters
 
-    for (Field field : ClassUtils.getFields(clazz)) {
+    if (checkSupertypes) {
+      visitor.member(clazz, clazz, "supertypes");
+      List<Class<?>> exposed =
+          ignoredClass ? Collections.emptyList() : typeGraph().exposedSupertypes(clazz);
+      for (Class<?> supertype : exposed) {
+        if (referenceIndex != null) {
+          referenceIndex.add(supertype, clazz, supertype.isInterface() ? "implements" : "extends");
+        }
+        visitor.reference(supertype.isInterface() ? ProblemType.INTERFACE : ProblemType.SUPERCLASS,
+            supertype, false);
+        ok = false;
+      }
+    }
+
+    MemberCache.Members members =
+        memberCache == null ? new MemberCache.Members(clazz) : memberCache.get(clazz);
+
+    List<Field> fields = members.fields;
+    for (Field field : fields) {
 
-      if (deprecatedToIgnore(field)) {
+      boolean ignored = ignoredClass || deprecatedToIgnore(field);
+      if (ignored && !visitor.visitsIgnored()) {
         continue;
       }
 
@@ -98,47 +368,44 @@ public class Apilyzer {
         continue;
       }
 
-      if (!isOk(field.getType())) {
-        problemReporter.field(clazz, field);
-        ok = false;
-      }
+      visitor.member(clazz, field, field.getType().getTypeName() + " " + field.getName());
+      ok &= reference(visitor, ProblemType.FIELD, field.getType(), clazz, field.getName(),
+          ignored);
     }
 
-    Constructor<?>[] constructors = clazz.getConstructors();
+    List<Constructor<?>> constructors = members.constructors;
     for (Constructor<?> constructor : constructors) {
 
       if (constructor.isSynthetic()) {
         continue;
       }
 
-      if (deprecatedToIgnore(constructor)) {
+      boolean ignored = ignoredClass || deprecatedToIgnore(constructor);
+      if (ignored && !visitor.visitsIgnored()) {
         continue;
       }
 
       Class<?>[] params = constructor.getParameterTypes();
+      Class<?>[] exceptions = constructor.getExceptionTypes();
+      visitor.member(clazz, constructor, clazz.getSimpleName() + signature(params, exceptions));
       for (Class<?> param : params) {
-        if (!isOk(param)) {
-          problemReporter.constructorParameter(clazz, param);
-          ok = false;
-        }
+        ok &= reference(visitor, ProblemType.CTOR_PARAM, param, clazz, "(...)", ignored);
       }
-
-      Class<?>[] exceptions = constructor.getExceptionTypes();
       for (Class<?> exception : exceptions) {
-        if (!isOk(exception)) {
-          problemReporter.constructorException(clazz, exception);
-          ok = false;
-        }
+        ok &= reference(visitor, ProblemType.CTOR_EXCEPTION, exception, clazz, "(...) throws",
+            ignored);
       }
     }
 
-    for (Method method : ClassUtils.getMethods(clazz)) {
+    List<Method> methods = members.methods;
+    for (Method method : methods) {
 
       if (method.isSynthetic() || method.isBridge()) {
         continue;
       }
 
-      if (deprecatedToIgnore(method)) {
+      boolean ignored = ignoredClass || deprecatedToIgnore(method);
+      if (ignored && !visitor.visitsIgnored()) {
         continue;
       }
 
@@ -147,29 +414,23 @@ public class Apilyzer {
         continue;
       }
 
-      if (!isOk(method.getReturnType())) {
-        problemReporter.methodReturn(clazz, method);
-        ok = false;
-      }
-
       Class<?>[] params = method.getParameterTypes();
+      Class<?>[] exceptions = method.getExceptionTypes();
+      visitor.member(clazz, method, method.getReturnType().getTypeName() + " " + method.getName()
+          + signature(params, exceptions));
+      ok &= reference(visitor, ProblemType.METHOD_RETURN, method.getReturnType(), clazz,
+          method.getName() + "(...)", ignored);
       for (Class<?> param : params) {
-        if (!isOk(param)) {
-          problemReporter.methodParameter(clazz, method, param);
-          ok = false;
-        }
+        ok &= reference(visitor, ProblemType.METHOD_PARAM, param, clazz,
+            method.getName() + "(...)", ignored);
       }
-
-      Class<?>[] exceptions = method.getExceptionTypes();
       for (Class<?> exception : exceptions) {
-        if (!isOk(exception)) {
-          problemReporter.methodException(clazz, method, exception);
-          ok = false;
-        }
+        ok &= reference(visitor, ProblemType.METHOD_EXCEPTION, exception, clazz,
+            method.getName() + "(...) throws", ignored);
       }
     }
 
-    for (Class<?> class1 : ClassUtils.getInnerClasses(clazz)) {
+    for (Class<?> class1 : members.innerClasses) {
 
       if (innerChecked.contains(class1)) {
         continue;
@@ -177,7 +438,8 @@ public class Apilyzer {
 
       innerChecked.add(class1);
 
-      if (deprecatedToIgnore(class1)) {
+      boolean ignored = ignoredClass || deprecatedToIgnore(class1);
+      if (ignored && !visitor.visitsIgnored()) {
         continue;
       }
 
@@ -186,10 +448,19 @@ public class Apilyzer {
         continue;
       }
 
-      if (!isOk(class1) && !checkClass(class1, innerChecked)) {
-        problemReporter.innerClass(clazz, class1);
-        ok = false;
-      }
+      // an inner class outside the public API is fine as long as its own members are
+      boolean innerOk =
+          ignored || isOk(class1, clazz, "N/A") || visitClass(class1, innerChecked, visitor);
+      visitor.member(clazz, class1, "class " + class1.getName());
+      visitor.reference(ProblemType.INNER_CLASS, class1, innerOk);
+      ok &= innerOk;
+    }
+
+    if (event.shouldCommit()) {
+      event.className = clazz.getName();
+      event.members = fields.size() + constructors.size() + methods.size();
+      event.problems = problemCount - problemsBefore;
+      event.commit();
     }
 
     return ok;
@@ -199,7 +470,156 @@ public class Apilyzer {
    * Perform the check.
    */
   public void check() {
-    publicApi.classStream().forEach(c -> checkClass(c, new HashSet<Class<?>>()));
+    check(publicApi.classStream());
+  }
+
+  /**
+   * Perform the check on a subset of the public API classes.
+   */
+  public void check(Stream<Class<?>> classes) {
+    if (jdkExports == null) {
+      jdkExports = JdkExports.load(null);
+    }
+    if (checkSupertypes) {
+      List<Class<?>> list = classes.collect(Collectors.toList());
+      typeGraph().addAll(list);
+      classes = list.stream();
+    }
+    classes.forEach(c -> checkClass(c, new HashSet<Class<?>>()));
+  }
+
+  /**
+   * Capture the surface of the public API, recording for each member the types it references and
+   * those among them which the check would report. The members are found by the same traversal as
+   * the check, so members inherited from public API or allowed types, and synthetic members, are
+   * left out, while inner classes and, if enabled, exposed supertypes are recorded as members.
+   * Deprecated members which the check ignores are recorded without any leaks.
+   */
+  public ApiSnapshot snapshot() {
+    if (jdkExports == null) {
+      jdkExports = JdkExports.load(null);
+    }
+    List<Class<?>> classes = publicApi.classStream().collect(Collectors.toList());
+    if (checkSupertypes) {
+      typeGraph().addAll(classes);
+    }
+    ApiSnapshot snapshot = new ApiSnapshot();
+    SnapshotVisitor visitor = new SnapshotVisitor(snapshot, publicApi);
+    for (Class<?> clazz : classes) {
+      snapshot.addType(clazz.getName());
+      visitClass(clazz, new HashSet<Class<?>>(), visitor);
+      visitor.finish();
+    }
+    return snapshot;
+  }
+
+  private static String signature(Class<?>[] params, Class<?>[] exceptions) {
+    StringBuilder sb = new StringBuilder("(");
+    sb.append(Stream.of(params).map(Class::getTypeName).collect(Collectors.joining(", ")));
+    sb.append(")");
+    if (exceptions.length > 0) {
+      sb.append(" throws ");
+      sb.append(Stream.of(exceptions).map(Class::getTypeName).collect(Collectors.joining(", ")));
+    }
+    return sb.toString();
+  }
+
+  /**
+   * A check of one class made before the public API was complete.
+   */
+  private static class ProvisionalCheck {
+
+    private final Class<?> clazz;
+    private final List<Problem> problems = new ArrayList<>();
+    private final Set<String> rejected = new HashSet<>();
+
+    ProvisionalCheck(Class<?> clazz) {
+      this.clazz = clazz;
+    }
+
+  }
+
+  /**
+   * Perform the check while the public API is still being discovered. The discovery is run on the
+   * calling thread and must pass each class to the given consumer as soon as it has been added to
+   * the public API, and the classes are checked on another thread as they arrive. Since classes are
+   * only ever added to the public API, a problem found early can only be a false positive if it was
+   * caused by a type which was added later; such classes are checked again once discovery has
+   * finished, and the problems are reported in discovery order. The given callback is run after
+   * discovery and before any problems are reported.
+   */
+  public void checkPipelined(Consumer<Consumer<Class<?>>> discovery, Runnable discovered) {
+    if (jdkExports == null) {
+      jdkExports = JdkExports.load(null);
+    }
+    Consumer<Problem> problemConsumer = problemSink;
+    long problemsBefore = problemCount;
+    // supertype verdicts made while the public API is incomplete must not be reused
+    typeGraph = null;
+    BlockingQueue<Class<?>> queue = new LinkedBlockingQueue<>();
+    List<ProvisionalCheck> checks = new ArrayList<>();
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    Thread checker = new Thread(() -> {
+      try {
+        for (Class<?> clazz = queue.take(); clazz != void.class; clazz = queue.take()) {
+          ProvisionalCheck check = new ProvisionalCheck(clazz);
+          problemSink = check.problems::add;
+          rejected = check.rejected;
+          // each check builds its own supertype verdicts, so that its rejected set records every
+          // type they depend on, rather than reusing a verdict recorded by another check
+          typeGraph = null;
+          checkClass(clazz, new HashSet<Class<?>>());
+          checks.add(check);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (RuntimeException | Error e) {
+        failure.set(e);
+        queue.clear();
+      }
+    }, "apilyzer-checker");
+    checker.setDaemon(true);
+    checker.start();
+
+    try {
+      discovery.accept(clazz -> {
+        if (failure.get() == null) {
+          queue.add(clazz);
+        }
+      });
+    } finally {
+      queue.add(void.class);
+      try {
+        checker.join();
+      } catch (InterruptedException e) {
+        checker.interrupt();
+        Thread.currentThread().interrupt();
+      }
+      problemSink = problemConsumer;
+      rejected = null;
+      problemCount = problemsBefore;
+      typeGraph = null;
+    }
+
+    Throwable t = failure.get();
+    if (t instanceof RuntimeException) {
+      throw (RuntimeException) t;
+    } else if (t instanceof Error) {
+      throw (Error) t;
+    }
+
+    discovered.run();
+    for (ProvisionalCheck check : checks) {
+      if (check.rejected.stream().anyMatch(publicApi::contains)) {
+        checkClass(check.clazz, new HashSet<Class<?>>());
+      } else {
+        for (Problem problem : check.problems) {
+          problemCount++;
+          problemConsumer.accept(problem);
+        }
+      }
+    }
   }
 
 }
@@ -0,0 +1,59 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.apilyzer;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import net.revelc.code.apilyzer.util.ClassUtils;
+
+/**
+ * The members of each checked class, as found by reflection, which can be shared by several
+ * analyzers checking the same classes against different public API definitions, so that each class
+ * is only reflected on once.
+ */
+public class MemberCache {
+
+  /**
+   * The members of one class which are checked.
+   */
+  static class Members {
+
+    final List<Field> fields;
+    final List<Constructor<?>> constructors;
+    final List<Method> methods;
+    final List<Class<?>> innerClasses;
+
+    Members(Class<?> clazz) {
+      this.fields = Collections.unmodifiableList(ClassUtils.getFields(clazz));
+      this.constructors = Collections.unmodifiableList(Arrays.asList(clazz.getConstructors()));
+      this.methods = Collections.unmodifiableList(ClassUtils.getMethods(clazz));
+      this.innerClasses = Collections.unmodifiableList(ClassUtils.getInnerClasses(clazz));
+    }
+
+  }
+
+  private final Map<Class<?>, Members> members = new ConcurrentHashMap<>();
+
+  Members get(Class<?> clazz) {
+    return members.computeIfAbsent(clazz, Members::new);
+  }
+
+}
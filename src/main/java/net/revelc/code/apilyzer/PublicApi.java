@@ -14,14 +14,18 @@
 
 package net.revelc.code.apilyzer;
 
-import com.google.common.reflect.ClassPath;
-import com.google.common.reflect.ClassPath.ClassInfo;
 import java.lang.annotation.Annotation;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import net.revelc.code.apilyzer.events.ClassLoadEvent;
+import net.revelc.code.apilyzer.util.ClassEntry;
+import net.revelc.code.apilyzer.util.ClassPathScanner;
 import net.revelc.code.apilyzer.util.ClassUtils;
 
 /**
@@ -30,90 +34,182 @@ import net.revelc.code.apilyzer.util.ClassUtils;
 public class PublicApi {
 
   /**
-   * Construct a public API definition object from a class path object and includes/excludes.
+   * Construct a public API definition object from the classes on a class path and
+   * includes/excludes. The classes are consumed lazily, as enumerated by {@link ClassPathScanner},
+   * and closed afterwards. Only the classes which survive the include/exclude filtering are loaded,
+   * using the given class loader, and those whose metadata is already known are only loaded if they
+   * are part of the public API.
    */
-  public static PublicApi fromClassPath(ClassPath classPath, List<String> includes,
+  public static PublicApi fromClassPath(ClassLoader classLoader, Stream<ClassEntry> classEntries,
+      List<String> includes, List<String> excludes, List<String> includeAnnotations,
+      List<String> excludeAnnotations) {
+    PublicApi api = create(classLoader, includes, excludes, includeAnnotations, excludeAnnotations);
+    api.addClasses(classEntries, clazz -> {});
+    return api;
+  }
+
+  /**
+   * Construct an empty public API definition object from includes/excludes, to which classes can
+   * be added with {@link #addClasses(Stream, Consumer)}.
+   */
+  public static PublicApi create(ClassLoader classLoader, List<String> includes,
       List<String> excludes, List<String> includeAnnotations, List<String> excludeAnnotations) {
-    PublicApi api = new PublicApi(includes, excludes, includeAnnotations, excludeAnnotations);
+    return new PublicApi(classLoader, includes, excludes, includeAnnotations, excludeAnnotations);
+  }
 
-    classLoop: for (ClassInfo classInfo : classPath.getAllClasses()) {
+  /**
+   * Add the public API classes from the given classes on a class path, as with
+   * {@link #fromClassPath(ClassLoader, Stream, List, List, List, List)}. Each class added to the
+   * public API is passed to the listener, after any of its inner classes which are also part of the
+   * public API have been added. While classes are being added, the public API may be queried
+   * concurrently from other threads.
+   */
+  public void addClasses(Stream<ClassEntry> classEntries, Consumer<Class<?>> listener) {
+    try (classEntries) {
+      classEntries.forEach(entry -> add(entry, listener));
+    }
+  }
 
-      // Do this check before possibly attempting any annotation checks as these require class
-      // loading. If the class is excluded by a pattern, then no need to load class.
-      if (api.excludes(classInfo)) {
-        continue;
-      }
+  /**
+   * Add the given class on a class path to the public API, if it is part of it, as with
+   * {@link #addClasses(Stream, Consumer)}. This allows the classes on a class path to be
+   * enumerated once for several public API definitions.
+   */
+  public void add(ClassEntry entry) {
+    add(entry, clazz -> {});
+  }
+
+  private void add(ClassEntry entry, Consumer<Class<?>> listener) {
+    int added = publicApiClasses.size();
+    consider(entry);
+    publicApiClasses.subList(added, publicApiClasses.size()).forEach(listener);
+    if (!retainClasses) {
+      publicApiClasses.clear();
+    }
+  }
 
-      Annotation[] annotations = api.getAnnotations(classInfo);
-      for (Annotation annotation : annotations) {
-        if (api.includes(annotation)) {
-          if (!api.annotationExcludes(annotations)) {
-            api.addPublicApiType(classInfo);
-          }
-          continue classLoop;
+  /**
+   * Controls whether the classes added to the public API are kept, to be returned by
+   * {@link #classStream()}. If not, only their names are kept, so the class loaders used to add
+   * them can be discarded. Classes are kept by default.
+   */
+  public void setRetainClasses(boolean retainClasses) {
+    this.retainClasses = retainClasses;
+  }
+
+  /**
+   * Use the given class loader to load the classes added from now on.
+   */
+  public void setClassLoader(ClassLoader classLoader) {
+    this.classLoader = classLoader;
+  }
+
+  private void consider(ClassEntry entry) {
+    // Do this check before possibly attempting any annotation checks as these require class
+    // loading. If the class is excluded by a pattern, then no need to load class.
+    if (excludesPs.anyMatch(entry.name)) {
+      return;
+    }
+
+    List<String> annotations = getAnnotations(entry);
+    for (String annotation : annotations) {
+      if (includes(annotation)) {
+        if (!annotationExcludes(annotations)) {
+          addPublicApiType(entry);
         }
+        return;
       }
+    }
 
-      if (api.includes(classInfo) && !api.annotationExcludes(annotations)) {
-        api.addPublicApiType(classInfo);
-      }
+    if (includesPs.anyMatch(entry.name) && !annotationExcludes(annotations)) {
+      addPublicApiType(entry);
     }
-    return api;
   }
 
+  private ClassLoader classLoader;
+  private boolean retainClasses = true;
   private PatternSet includesPs;
   private PatternSet excludesPs;
   private PatternSet includeAnnotationsPs;
   private PatternSet excludeAnnotationsPs;
   private final List<Class<?>> publicApiClasses = new ArrayList<>();
-  private final TreeSet<String> publicSet = new TreeSet<>();
+  private final ConcurrentSkipListSet<String> publicSet = new ConcurrentSkipListSet<>();
 
-  private PublicApi(List<String> includes, List<String> excludes, List<String> includeAnnotations,
-      List<String> excludeAnnotations) {
+  private PublicApi(ClassLoader classLoader, List<String> includes, List<String> excludes,
+      List<String> includeAnnotations, List<String> excludeAnnotations) {
+    this.classLoader = classLoader;
     this.includesPs = new PatternSet(includes);
     this.includeAnnotationsPs = new PatternSet(includeAnnotations);
     this.excludesPs = new PatternSet(excludes);
     this.excludeAnnotationsPs = new PatternSet(excludeAnnotations);
   }
 
-  private void addPublicApiType(ClassInfo classInfo) {
-    Class<?> clazz = classInfo.load();
+  private Class<?> load(String className) {
+    ClassLoadEvent event = new ClassLoadEvent();
+    event.begin();
+    try {
+      return classLoader.loadClass(className);
+    } catch (ClassNotFoundException e) {
+      throw new IllegalStateException(e);
+    } finally {
+      if (event.shouldCommit()) {
+        event.className = className;
+        event.commit();
+      }
+    }
+  }
+
+  private void addPublicApiType(ClassEntry entry) {
+    if (publicSet.contains(entry.name) || entry.isKnownNotPublicOrProtected()) {
+      return;
+    }
+    Class<?> clazz = load(entry.name);
     if (ClassUtils.isPublicOrProtected(clazz) && !publicSet.contains(clazz.getName())) {
       publicApiClasses.add(clazz);
       publicSet.add(clazz.getName());
 
-      addPublicInnerClasses(publicApiClasses, publicSet, clazz);
+      addPublicInnerClasses(clazz);
     }
   }
 
-  private void addPublicInnerClasses(List<Class<?>> publicApiClasses, TreeSet<String> publicSet,
-      Class<?> clazz) {
+  private void addPublicInnerClasses(Class<?> clazz) {
 
     Class<?>[] innerClasses = clazz.getDeclaredClasses();
     for (Class<?> ic : innerClasses) {
       // If a class is in the Public API then all of its public inner class are also considered
       // to be in the public API unless explicitly excluded.
       if (ClassUtils.isPublicOrProtected(ic) && !publicSet.contains(ic.getName())
-          && !annotationExcludes(ic.getDeclaredAnnotations())
+          && !annotationExcludes(annotationNames(ic.getDeclaredAnnotations()))
           && !excludesPs.anyMatch(ic.getName())) {
         publicApiClasses.add(ic);
         publicSet.add(ic.getName());
 
-        addPublicInnerClasses(publicApiClasses, publicSet, ic);
+        addPublicInnerClasses(ic);
       }
     }
   }
 
-  private static String formatAnnotation(Annotation annotation) {
-    return "@" + annotation.annotationType().getName();
+  private static List<String> annotationNames(Annotation[] annotations) {
+    return Arrays.stream(annotations).map(annotation -> annotation.annotationType().getName())
+        .collect(Collectors.toList());
+  }
+
+  private static String formatAnnotation(String annotationName) {
+    return "@" + annotationName;
   }
 
-  private boolean annotationExcludes(Annotation[] annotations) {
-    return !excludeAnnotationsPs.isEmpty() && Arrays.stream(annotations)
+  private boolean annotationExcludes(List<String> annotations) {
+    return !excludeAnnotationsPs.isEmpty() && annotations.stream()
         .anyMatch(annotation -> excludeAnnotationsPs.anyMatch(formatAnnotation(annotation)));
   }
 
-  Stream<Class<?>> classStream() {
+  /**
+   * Return the public API as a stream of classes.
+   */
+  public Stream<Class<?>> classStream() {
+    if (!retainClasses) {
+      throw new IllegalStateException("The public API classes were not retained");
+    }
     return publicApiClasses.stream();
   }
 
@@ -123,31 +219,26 @@ public class PublicApi {
 
   boolean excludes(Class<?> classToCheck) {
     return excludesPs.anyMatch(classToCheck.getName())
-        || annotationExcludes(classToCheck.getDeclaredAnnotations());
+        || annotationExcludes(annotationNames(classToCheck.getDeclaredAnnotations()));
   }
 
-  private boolean excludes(ClassInfo classInfo) {
-    return excludesPs.anyMatch(classInfo.getName());
-  }
-
-  private Annotation[] getAnnotations(ClassInfo classInfo) {
+  private List<String> getAnnotations(ClassEntry entry) {
     if (includeAnnotationsPs.isEmpty() && excludeAnnotationsPs.isEmpty()) {
-      return new Annotation[0];
+      return Collections.emptyList();
     }
     // ignore annotations from java itself, to avoid ClassNotFoundExceptions
-    String name = classInfo.getName();
-    return (name.startsWith("com.sun") || name.startsWith("java.")) ? new Annotation[0]
-        : classInfo.load().getDeclaredAnnotations();
+    String name = entry.name;
+    if (name.startsWith("com.sun") || name.startsWith("java.")) {
+      return Collections.emptyList();
+    }
+    return entry.hasMetadata() ? entry.annotations()
+        : annotationNames(load(name).getDeclaredAnnotations());
   }
 
-  private boolean includes(Annotation annotation) {
+  private boolean includes(String annotation) {
     return includeAnnotationsPs.anyMatch(formatAnnotation(annotation));
   }
 
-  private boolean includes(ClassInfo classInfo) {
-    return includesPs.anyMatch(classInfo.getName());
-  }
-
   /**
    * Returns true if the public API contained no matching classes.
    */
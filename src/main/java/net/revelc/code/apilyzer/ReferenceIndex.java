@@ -0,0 +1,181 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.apilyzer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * An index from each type referenced by the public API to the API members which reference it.
+ */
+public class ReferenceIndex {
+
+  private static final int MAGIC = 0x41504952; // "APIR"
+  private static final int VERSION = 1;
+
+  /**
+   * An API member which references an indexed type.
+   */
+  public static class Referrer {
+
+    public final String contextClass;
+    public final String memberName;
+
+    Referrer(String contextClass, String memberName) {
+      this.contextClass = contextClass;
+      this.memberName = memberName;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (o instanceof Referrer) {
+        Referrer other = (Referrer) o;
+        return contextClass.equals(other.contextClass) && memberName.equals(other.memberName);
+      }
+      return false;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(contextClass, memberName);
+    }
+
+  }
+
+  private final TreeMap<String, Set<Referrer>> referrers = new TreeMap<>();
+
+  /**
+   * Record that a member of the context class references the given type. Array types are indexed
+   * by their component type, and primitive types are not indexed.
+   */
+  public synchronized void add(Class<?> referencedType, Class<?> contextClass,
+      String memberName) {
+    while (referencedType.isArray()) {
+      referencedType = referencedType.getComponentType();
+    }
+    if (referencedType.isPrimitive()) {
+      return;
+    }
+    referrers.computeIfAbsent(referencedType.getName(), k -> new LinkedHashSet<>())
+        .add(new Referrer(contextClass.getName(), memberName));
+  }
+
+  /**
+   * Returns the sorted set of all referenced type names in this index.
+   */
+  public synchronized SortedSet<String> types() {
+    return Collections.unmodifiableSortedSet(new TreeSet<>(referrers.keySet()));
+  }
+
+  /**
+   * Returns the API members which reference the given type, or an empty list if the type is not
+   * referenced by the API.
+   */
+  public synchronized List<Referrer> referrers(String typeName) {
+    Set<Referrer> set = referrers.get(typeName);
+    return set == null ? Collections.emptyList() : new ArrayList<>(set);
+  }
+
+  /**
+   * Write this index to the given file. All names are stored once in a string table, and each
+   * entry refers to them by position.
+   */
+  public synchronized void write(Path file) throws IOException {
+    Map<String, Integer> ids = new HashMap<>();
+    List<String> strings = new ArrayList<>();
+    for (Map.Entry<String, Set<Referrer>> entry : referrers.entrySet()) {
+      intern(entry.getKey(), ids, strings);
+      for (Referrer referrer : entry.getValue()) {
+        intern(referrer.contextClass, ids, strings);
+        intern(referrer.memberName, ids, strings);
+      }
+    }
+
+    try (DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(strings.size());
+      for (String s : strings) {
+        out.writeUTF(s);
+      }
+      out.writeInt(referrers.size());
+      for (Map.Entry<String, Set<Referrer>> entry : referrers.entrySet()) {
+        out.writeInt(ids.get(entry.getKey()));
+        out.writeInt(entry.getValue().size());
+        for (Referrer referrer : entry.getValue()) {
+          out.writeInt(ids.get(referrer.contextClass));
+          out.writeInt(ids.get(referrer.memberName));
+        }
+      }
+    }
+  }
+
+  private static void intern(String s, Map<String, Integer> ids, List<String> strings) {
+    if (!ids.containsKey(s)) {
+      ids.put(s, strings.size());
+      strings.add(s);
+    }
+  }
+
+  /**
+   * Read an index previously written with {@link #write(Path)}.
+   */
+  public static ReferenceIndex read(Path file) throws IOException {
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      if (in.readInt() != MAGIC) {
+        throw new IOException("Not an APILyzer reference index: " + file);
+      }
+      int version = in.readInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported reference index version " + version + ": " + file);
+      }
+      String[] strings = new String[in.readInt()];
+      for (int i = 0; i < strings.length; i++) {
+        strings[i] = in.readUTF();
+      }
+      ReferenceIndex index = new ReferenceIndex();
+      int typeCount = in.readInt();
+      for (int i = 0; i < typeCount; i++) {
+        String type = strings[in.readInt()];
+        int count = in.readInt();
+        Set<Referrer> set = new LinkedHashSet<>();
+        for (int j = 0; j < count; j++) {
+          set.add(new Referrer(strings[in.readInt()], strings[in.readInt()]));
+        }
+        index.referrers.put(type, set);
+      }
+      return index;
+    }
+  }
+
+}
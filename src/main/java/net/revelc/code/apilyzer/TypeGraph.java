@@ -0,0 +1,116 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.apilyzer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * The supertypes, interfaces and enclosing classes of the types being checked, used to find the
+ * supertypes which a type exposes although they are neither in the public API nor allowed.
+ *
+ * <p>A type exposes each of its direct supertypes which is not allowed, along with everything that
+ * supertype exposes in turn; an allowed supertype exposes nothing on behalf of its subtypes. Types
+ * are processed in topological order, each after its supertypes and enclosing class, so the
+ * verdict for a supertype is computed once and reused by all of its subtypes.
+ */
+class TypeGraph {
+
+  private static class Node {
+
+    private final List<Class<?>> supertypes = new ArrayList<>();
+    private final Class<?> enclosing;
+    private List<Class<?>> exposed;
+
+    Node(Class<?> type) {
+      if (type.getSuperclass() != null) {
+        supertypes.add(type.getSuperclass());
+      }
+      Collections.addAll(supertypes, type.getInterfaces());
+      // enclosing classes are only ordered before their nested classes; they expose nothing
+      this.enclosing = type.getEnclosingClass();
+    }
+
+  }
+
+  private final Predicate<Class<?>> allowed;
+  private final Map<Class<?>, Node> nodes = new HashMap<>();
+
+  /**
+   * Create an empty graph.
+   *
+   * @param allowed decides whether a type is in the public API or allowed
+   */
+  TypeGraph(Predicate<Class<?>> allowed) {
+    this.allowed = allowed;
+  }
+
+  /**
+   * Add the given types, with all of their supertypes and enclosing classes, and compute what each
+   * of them exposes.
+   */
+  void addAll(Iterable<Class<?>> types) {
+    List<Node> order = new ArrayList<>();
+    for (Class<?> type : types) {
+      visit(type, order);
+    }
+    for (Node node : order) {
+      Set<Class<?>> exposed = new LinkedHashSet<>();
+      for (Class<?> supertype : node.supertypes) {
+        if (!allowed.test(supertype)) {
+          exposed.add(supertype);
+          exposed.addAll(nodes.get(supertype).exposed);
+        }
+      }
+      node.exposed = new ArrayList<>(exposed);
+    }
+  }
+
+  // add the type and everything it depends on to the graph, appending new nodes in post-order
+  private void visit(Class<?> type, List<Node> order) {
+    if (nodes.containsKey(type)) {
+      return;
+    }
+    Node node = new Node(type);
+    nodes.put(type, node);
+    for (Class<?> supertype : node.supertypes) {
+      visit(supertype, order);
+    }
+    if (node.enclosing != null) {
+      visit(node.enclosing, order);
+    }
+    order.add(node);
+  }
+
+  /**
+   * Returns the supertypes exposed by the given type which are neither in the public API nor
+   * allowed, adding it to the graph first if necessary.
+   */
+  List<Class<?>> exposedSupertypes(Class<?> type) {
+    Node node = nodes.get(type);
+    if (node == null) {
+      addAll(Collections.singletonList(type));
+      node = nodes.get(type);
+    }
+    return node.exposed;
+  }
+
+}
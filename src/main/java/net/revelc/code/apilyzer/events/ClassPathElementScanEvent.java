@@ -0,0 +1,44 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.apilyzer.events;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A flight recorder event for enumerating the classes in one class path element.
+ */
+@Name("net.revelc.apilyzer.ClassPathElementScan")
+@Label("Class Path Element Scan")
+@Category("APILyzer")
+@Description("A class path element enumerated while finding the public API")
+@Enabled(false)
+@SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD",
+    justification = "fields are read by the flight recorder")
+public class ClassPathElementScanEvent extends Event {
+
+  @Label("Class Path Element")
+  public String element;
+
+  @Label("Entries")
+  @Description("The number of class entries found in the element")
+  public long entries;
+
+}
@@ -0,0 +1,534 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.apilyzer.maven.plugin;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import net.revelc.code.apilyzer.ApiManifest;
+import net.revelc.code.apilyzer.ApiSnapshot;
+import net.revelc.code.apilyzer.Apilyzer;
+import net.revelc.code.apilyzer.PublicApi;
+import net.revelc.code.apilyzer.ReferenceIndex;
+import net.revelc.code.apilyzer.events.ReportWriteEvent;
+import net.revelc.code.apilyzer.problems.Problem;
+import net.revelc.code.apilyzer.util.ClassEntry;
+import net.revelc.code.apilyzer.util.ClassPathScanner;
+import net.revelc.code.apilyzer.util.ClassUtils;
+import net.revelc.code.apilyzer.util.Fingerprint;
+import net.revelc.code.apilyzer.util.JdkExports;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Parameter;
+
+/**
+ * The configuration and reporting shared by the goals which analyze a public API.
+ */
+public abstract class AbstractApilyzerMojo extends AbstractMojo {
+
+  @Parameter(defaultValue = "${plugin.version}", readonly = true)
+  String pluginVersion;
+
+  /**
+   * The classes to include in your public API definition. These classes will be included in the
+   * analysis. The format is java regular expressions. Any classes on the classpath whose
+   * fully-qualified class name matches any of these regular expressions, and does not match any of
+   * those in the excludes, will be included for analysis.
+   *
+   * <p>Matching is done with the regular expression anchored to the beginning and end of the
+   * fully-qualified class name, so there is no need to prefix with {@code ^} or suffix with
+   * {@code $}. To match a partial class name, you will need to add {@code .*} as a prefix and/or
+   * suffix.
+   *
+   * <p>If an include pattern matches a class, then that class along with all of its public or
+   * protected inner classes are added to the public API definition. If you do not wish for a
+   * particular inner class to be in the public API then you can add a more specific exclusion for
+   * it. For example could include {@code com.foo.C} and exclude {@code com.foo.C$I1} if the inner
+   * class {@code C$I1} ends up in the API when it's not wanted.
+   *
+   * <p>Example:
+   *
+   * <pre>
+   * {@code
+   * <configuration>
+   *   ...
+   *   <includes>
+   *     <include>org[.]apache[.].*</include>
+   *     <include>com[.]example[.]myproject[.].*</include>
+   *   </includes>
+   *   ...
+   * </configuration>
+   * }
+   * </pre>
+   *
+   * @since 1.0.0
+   */
+  @Parameter(alias = "includes")
+  List<String> includes = Collections.emptyList();
+
+  /**
+   * The classes to exclude from your public API definition, which may have otherwise matched your
+   * includes. The format is the same as {@link #includes}.
+   *
+   * <p>Example:
+   *
+   * <pre>
+   * {@code
+   * <configuration>
+   *   ...
+   *   <excludes>
+   *     <exclude>.*[.]impl[.].*</exclude>
+   *   </excludes>
+   *   ...
+   * </configuration>
+   * }
+   * </pre>
+   *
+   * @since 1.0.0
+   */
+  @Parameter(alias = "excludes")
+  List<String> excludes = Collections.emptyList();
+
+  /**
+   * The additional classes, which are allowed to be referenced in your public API, but are not,
+   * themselves, declared as part of your API. For example, these may be objects from a standard
+   * library, which you utilize as parameters in your API methods.
+   *
+   * <p>These follow the same format as {@link #includes} and {@link #excludes}. An entry may
+   * instead be {@code manifest:} followed by the path to an API manifest written by the
+   * {@code analyze} goal of another project, to allow exactly the types in that project's public
+   * API. A released version's manifest can be retrieved from a repository, for example with the
+   * {@code dependency:copy} goal, using the classifier {@code apilyzer} and the type
+   * {@code manifest}.
+   *
+   * <p>Example:
+   *
+   * <pre>
+   * {@code
+   * <configuration>
+   *   ...
+   *   <allows>
+   *     <allow>com[.]google[.]common[.].*</allow>
+   *     <allow>manifest:${project.build.directory}/lib/mylib-apilyzer.manifest</allow>
+   *   </allows>
+   *   ...
+   * </configuration>
+   * }
+   * </pre>
+   *
+   * @since 1.0.0
+   */
+  @Parameter(alias = "allows")
+  List<String> allows = Collections.emptyList();
+
+  /**
+   * Allows skipping execution of this plugin. This may be useful for testing, or if you find that
+   * analysis is taking too long.
+   *
+   * @since 1.0.0
+   */
+  @Parameter(alias = "skip", property = "apilyzer.skip", defaultValue = "false")
+  boolean skip;
+
+  /**
+   * Controls whether API items marked with the {@link Deprecated} annotation are ignored. By
+   * default, these are ignored (excluded from analysis). One useful way to make use of this plugin
+   * is to use it to help identify API methods which should be deprecated (and eventually removed)
+   * because they are using unexpected and problematic classes. Once found, they can be deprecated
+   * and excluded from future analysis.
+   *
+   * @since 1.0.0
+   */
+  @Parameter(alias = "ignoreDeprecated", property = "apilyzer.ignoreDeprecated",
+      defaultValue = "true")
+  boolean ignoreDeprecated;
+
+  /**
+   * Controls whether public API classes are also checked for extending or implementing types which
+   * are neither in the public API nor allowed. Such a supertype is reported with the type
+   * {@code SUPERCLASS} or {@code INTERFACE}, along with any further supertypes exposed through it.
+   *
+   * @since 1.4.0
+   */
+  @Parameter(alias = "checkSupertypes", property = "apilyzer.checkSupertypes",
+      defaultValue = "false")
+  boolean checkSupertypes;
+
+  /**
+   * The directory for caching data which is shared between builds, such as the set of packages
+   * exported by the running JDK. Types in packages exported by the Java SE modules of the JDK are
+   * always allowed to be referenced by the public API.
+   *
+   * @since 1.4.0
+   */
+  @Parameter(alias = "cacheDirectory", property = "apilyzer.cacheDirectory",
+      defaultValue = "${settings.localRepository}/.cache/apilyzer")
+  String cacheDirectory;
+
+  /**
+   * Controls whether the classes in dependency jars, and the metadata needed to decide whether they
+   * are part of the public API, are cached in the {@link #cacheDirectory}. The cache is keyed by
+   * the names, sizes and checksums of the entries listed in each jar's central directory, so
+   * finding an index only reads the same part of the jar that enumerating its classes does. The
+   * cache may be shared by all builds using the same cache directory, and only the public API
+   * classes in a jar need to be loaded once it has been indexed.
+   *
+   * @since 1.4.0
+   */
+  @Parameter(alias = "useJarIndexCache", property = "apilyzer.useJarIndexCache",
+      defaultValue = "true")
+  boolean useJarIndexCache;
+
+  /**
+   * Allows ignoring the problems found. If this is set to true, then the report will still be
+   * created, but the plugin will not cause the build to fail.
+   *
+   * @since 1.0.0
+   */
+  @Parameter(alias = "ignoreProblems", property = "apilyzer.ignoreProblems", defaultValue = "false")
+  boolean ignoreProblems;
+
+  /**
+   * This option enables including classes in your public API definition based on class level
+   * annotations. This option takes one or more regular expression. Annotations are discovered using
+   * reflection, so annotations scoped to compile may not be seen. For each regular expression
+   * {@link java.lang.String#matches(java.lang.String)} is called to compare with each annotation's
+   * class name prefixed with the '@' character. If any annotation matches any regular expression
+   * and it does not match any exclusion, then its included as an API type.
+   *
+   * <p>This section of the configuration is ORed with the {@code <includes>} section. So if a class
+   * matches something in either section (and its not excluded), then its included in the API
+   * definition.
+   *
+   * <p>This section has the same behavior with inner classes as {@code <includes>}.
+   *
+   * <p>Example:
+   *
+   * <pre>
+   * {@code
+   * <configuration>
+   *   ...
+   *   <includeAnnotations>
+   *     <include>[@]com[.]proj42[.]Public.*</include>
+   *   </includeAnnotations>
+   *   ...
+   * </configuration>
+   * }
+   * </pre>
+   *
+   * @since 1.1.0
+   */
+  @Parameter(alias = "includeAnnotations")
+  List<String> includeAnnotations = Collections.emptyList();
+
+  /**
+   * Exclude classes from public API definition using annotation.
+   *
+   * <p>Example:
+   *
+   * <pre>
+   * {@code
+   * <configuration>
+   *   ...
+   *   <excludeAnnotations>
+   *     <exclude>[@]com[.]proj42[.]Alpha.*</exclude>
+   *   </excludeAnnotations>
+   *   ...
+   * </configuration>
+   * }
+   * </pre>
+   *
+   * @see #includeAnnotations
+   * @since 1.1.0
+   */
+  @Parameter(alias = "excludeAnnotations")
+  List<String> excludeAnnotations = Collections.emptyList();
+
+  private static final String FORMAT = "  %-20s %-60s %-35s %s%n";
+
+  /**
+   * The prefix of the entries in {@link #allows} which name an API manifest file.
+   */
+  static final String MANIFEST_PREFIX = "manifest:";
+
+  private final Map<List<String>, Set<String>> manifestTypes = new ConcurrentHashMap<>();
+
+  /**
+   * Find the public API on the given class path, as configured.
+   */
+  PublicApi findPublicApi(ClassLoader classLoader, List<String> classPathElements) {
+    return PublicApi.fromClassPath(classLoader, classEntries(classPathElements), includes,
+        excludes, includeAnnotations, excludeAnnotations);
+  }
+
+  /**
+   * Create an empty public API, as defined by the given profile, to which classes will be added.
+   */
+  static PublicApi newPublicApi(ClassLoader classLoader, Profile profile) {
+    return PublicApi.create(classLoader, profile.includes, profile.excludes,
+        profile.includeAnnotations, profile.excludeAnnotations);
+  }
+
+  /**
+   * Returns the public API definition configured for this execution, as an unnamed profile.
+   */
+  Profile configuredProfile() {
+    Profile profile = new Profile();
+    profile.includes = includes;
+    profile.excludes = excludes;
+    profile.allows = allows;
+    profile.includeAnnotations = includeAnnotations;
+    profile.excludeAnnotations = excludeAnnotations;
+    return profile;
+  }
+
+  /**
+   * Create an empty public API, as configured, to which classes will be added while checking.
+   */
+  PublicApi newPublicApi(ClassLoader classLoader) {
+    return PublicApi.create(classLoader, includes, excludes, includeAnnotations,
+        excludeAnnotations);
+  }
+
+  /**
+   * Enumerate the classes in the given class path elements, using the jar index cache if enabled.
+   */
+  Stream<ClassEntry> classEntries(List<String> classPathElements) {
+    Path jarIndexCache = useJarIndexCache ? Paths.get(cacheDirectory) : null;
+    return ClassPathScanner.classEntries(classPathElements, jarIndexCache);
+  }
+
+  /**
+   * Find the public API in the given class path and capture its surface, as configured.
+   */
+  ApiSnapshot takeSnapshot(List<String> classPathElements) throws MojoExecutionException {
+    URLClassLoader classLoader;
+    try {
+      classLoader = ClassUtils.getClassLoader(classPathElements);
+    } catch (IllegalArgumentException e) {
+      throw new MojoExecutionException("Error resolving project classpath", e);
+    }
+    try (classLoader) {
+      PublicApi publicApi = findPublicApi(classLoader, classPathElements);
+      if (publicApi.isEmpty()) {
+        throw new MojoExecutionException("No public API types were matched");
+      }
+      return newApilyzer(publicApi, problem -> {}).snapshot();
+    } catch (IOException e) {
+      throw new MojoExecutionException("Unable to close project class loader", e);
+    }
+  }
+
+  /**
+   * Start a fingerprint of the configuration which affects the report, including the plugin and
+   * JDK versions.
+   */
+  Fingerprint configurationFingerprint() {
+    return new Fingerprint().add("pluginVersion", pluginVersion)
+        .add("java.home", System.getProperty("java.home"))
+        .add("java.version", System.getProperty("java.version")).add("includes", includes)
+        .add("excludes", excludes).add("allows", allows).add("ignoreDeprecated", ignoreDeprecated)
+        .add("checkSupertypes", checkSupertypes)
+        .add("includeAnnotations", includeAnnotations)
+        .add("excludeAnnotations", excludeAnnotations);
+  }
+
+  /**
+   * Create an analyzer for the given public API, as configured.
+   */
+  Apilyzer newApilyzer(PublicApi publicApi, Consumer<Problem> problemConsumer)
+      throws MojoExecutionException {
+    return newApilyzer(publicApi, allows, problemConsumer);
+  }
+
+  /**
+   * Create an analyzer for the given public API, allowing the given external types instead of
+   * those configured.
+   */
+  Apilyzer newApilyzer(PublicApi publicApi, List<String> allows,
+      Consumer<Problem> problemConsumer) throws MojoExecutionException {
+    List<String> patterns = allows.stream().filter(allow -> !allow.startsWith(MANIFEST_PREFIX))
+        .collect(Collectors.toList());
+    Apilyzer apilyzer = new Apilyzer(publicApi, patterns, ignoreDeprecated, problemConsumer);
+    List<String> manifests = manifestFiles(allows);
+    if (!manifests.isEmpty()) {
+      Set<String> types = manifestTypes.get(manifests);
+      if (types == null) {
+        types = readManifests(manifests);
+        manifestTypes.put(manifests, types);
+      }
+      apilyzer.setAllowedTypes(types);
+    }
+    apilyzer.setCheckSupertypes(checkSupertypes);
+    apilyzer.setJdkExports(JdkExports.load(Paths.get(cacheDirectory)));
+    return apilyzer;
+  }
+
+  /**
+   * Returns the API manifest files named by the given allowed types.
+   */
+  static List<String> manifestFiles(List<String> allows) {
+    return allows.stream().filter(allow -> allow.startsWith(MANIFEST_PREFIX))
+        .map(allow -> allow.substring(MANIFEST_PREFIX.length()).trim())
+        .collect(Collectors.toList());
+  }
+
+  private static Set<String> readManifests(List<String> manifests)
+      throws MojoExecutionException {
+    if (manifests.size() == 1) {
+      return readManifest(manifests.get(0));
+    }
+    Set<String> types = new HashSet<>();
+    for (String manifest : manifests) {
+      types.addAll(readManifest(manifest));
+    }
+    return types;
+  }
+
+  private static Set<String> readManifest(String manifest) throws MojoExecutionException {
+    try {
+      return ApiManifest.read(Paths.get(manifest));
+    } catch (IOException e) {
+      throw new MojoExecutionException("Bad configuration: cannot read API manifest " + manifest,
+          e);
+    }
+  }
+
+  /**
+   * Write the analysis configuration and the public API to the start of a report.
+   */
+  void writeReportHeader(PrintStream out, Stream<String> publicApiNames) {
+    writeReportHeader(out, configuredProfile(), publicApiNames);
+  }
+
+  /**
+   * Write the public API definition of a profile and its public API to the start of a report.
+   */
+  static void writeReportHeader(PrintStream out, Profile profile,
+      Stream<String> publicApiNames) {
+    out.println("Includes: " + profile.includes);
+    out.println("IncludeAnnotations: " + profile.includeAnnotations);
+    out.println("ExcludesAnnotations: " + profile.excludeAnnotations);
+    out.println("Excludes: " + profile.excludes);
+    out.println("Allowed: " + profile.allows);
+    out.println();
+    out.println("Public API:");
+    publicApiNames.map(item -> "  " + item).forEach(out::println);
+    out.println();
+    out.println("Problems : ");
+    out.println();
+    out.printf(FORMAT, "CONTEXT", "TYPE", "FIELD/METHOD", "NON-PUBLIC REFERENCE");
+    out.println();
+  }
+
+  /**
+   * Write a single problem to a report.
+   */
+  static void writeProblem(PrintStream out, Problem problem) {
+    out.print(formatProblem(problem));
+  }
+
+  /**
+   * Format a single problem as a line of a report, including the line separator.
+   */
+  static String formatProblem(Problem problem) {
+    return String.format(FORMAT, problem.problemType, problem.contextClass.getName(),
+        problem.memberName, problem.nonPublicType.getName());
+  }
+
+  /**
+   * Write the end of a report.
+   */
+  static void writeReportFooter(PrintStream out, long problemCount) {
+    out.println();
+    out.println("Total : " + problemCount);
+  }
+
+  /**
+   * Writes the contents of a report or index file.
+   */
+  @FunctionalInterface
+  interface ReportWriter {
+
+    void write(Path file) throws IOException;
+
+  }
+
+  /**
+   * Write a report or index file, recording it as a {@link ReportWriteEvent}.
+   */
+  static void writeReportFile(String file, ReportWriter writer) throws IOException {
+    ReportWriteEvent event = new ReportWriteEvent();
+    event.begin();
+    writer.write(Paths.get(file));
+    commitReportWrite(event, file);
+  }
+
+  /**
+   * Commit an event begun before writing the given report or index file, if it is recorded.
+   */
+  static void commitReportWrite(ReportWriteEvent event, String file) {
+    if (event.shouldCommit()) {
+      event.file = file;
+      event.commit();
+    }
+  }
+
+  /**
+   * Write the reference index collected during analysis.
+   */
+  static void writeReferenceIndex(ReferenceIndex referenceIndex, String referenceIndexFile)
+      throws MojoExecutionException {
+    try {
+      writeReportFile(referenceIndexFile, referenceIndex::write);
+    } catch (IOException e) {
+      throw new MojoExecutionException(
+          "Bad configuration: cannot create specified referenceIndexFile", e);
+    }
+  }
+
+  /**
+   * Log the number of problems found, and fail the build if there were any, unless they are
+   * ignored.
+   */
+  void reportResult(long problemCount, String outputFile) throws MojoFailureException {
+    String msg =
+        "APILyzer found " + problemCount + " problem" + (problemCount == 1 ? "" : "s") + ".";
+    msg += " See " + outputFile + " for details.";
+    if (problemCount < 0) {
+      throw new AssertionError("Inconceivable!");
+    } else if (problemCount == 0) {
+      getLog().info(msg);
+    } else if (problemCount > 0 && ignoreProblems) {
+      getLog().warn(msg);
+    } else {
+      getLog().error(msg);
+      throw new MojoFailureException(msg);
+    }
+  }
+
+}
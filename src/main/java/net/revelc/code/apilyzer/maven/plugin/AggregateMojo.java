@@ -0,0 +1,257 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.apilyzer.maven.plugin;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import net.revelc.code.apilyzer.Apilyzer;
+import net.revelc.code.apilyzer.PublicApi;
+import net.revelc.code.apilyzer.ReferenceIndex;
+import net.revelc.code.apilyzer.problems.Problem;
+import net.revelc.code.apilyzer.util.ClassEntry;
+import net.revelc.code.apilyzer.util.ClassPathScanner;
+import net.revelc.code.apilyzer.util.ClassUtils;
+import org.apache.maven.artifact.DependencyResolutionRequiredException;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * Analyzes the declared public API of several modules of a multi-module build together. The
+ * modules are scanned once, with a single class loader, into one combined public API, so the API
+ * types of one module may be referenced by the API of another without declaring them in
+ * {@code allows}. The modules are then checked in parallel, and a report is written for each
+ * module, along with a combined report.
+ */
+@Mojo(name = "aggregate", aggregator = true,
+    requiresDependencyResolution = ResolutionScope.COMPILE, threadSafe = true)
+public class AggregateMojo extends AbstractApilyzerMojo {
+
+  @Parameter(defaultValue = "${reactorProjects}", readonly = true)
+  private List<MavenProject> reactorProjects;
+
+  /**
+   * The artifactIds of the reactor modules to analyze together. If not set, all modules which do
+   * not have {@code pom} packaging are analyzed.
+   *
+   * <p>Example:
+   *
+   * <pre>
+   * {@code
+   * <configuration>
+   *   ...
+   *   <modules>
+   *     <module>myproject-core</module>
+   *     <module>myproject-client</module>
+   *   </modules>
+   *   ...
+   * </configuration>
+   * }
+   * </pre>
+   *
+   * @since 1.4.0
+   */
+  @Parameter(alias = "modules")
+  private List<String> modules = Collections.emptyList();
+
+  /**
+   * The absolute path for the combined report file.
+   *
+   * @since 1.4.0
+   */
+  @Parameter(alias = "outputFile", property = "apilyzer.aggregateOutputFile",
+      defaultValue = "${project.build.directory}/apilyzer-aggregate.txt")
+  private String outputFile;
+
+  /**
+   * The name of the report file written to the build directory of each analyzed module.
+   *
+   * @since 1.4.0
+   */
+  @Parameter(alias = "moduleOutputFileName", defaultValue = "apilyzer.txt")
+  private String moduleOutputFileName;
+
+  /**
+   * The absolute path for the combined reference index file, which can be queried with the
+   * {@code query} goal.
+   *
+   * @since 1.4.0
+   */
+  @Parameter(alias = "referenceIndexFile", property = "apilyzer.referenceIndexFile",
+      defaultValue = "${project.build.directory}/apilyzer.idx")
+  private String referenceIndexFile;
+
+  /**
+   * The public API classes of one module, and the problems found with them.
+   */
+  private static class ModuleAnalysis {
+    final String name;
+    final File reportFile;
+    final List<Class<?>> classes = new ArrayList<>();
+    final List<Problem> problems = new ArrayList<>();
+
+    ModuleAnalysis(String name, File reportFile) {
+      this.name = name;
+      this.reportFile = reportFile;
+    }
+  }
+
+  @Override
+  public void execute() throws MojoFailureException, MojoExecutionException {
+
+    if (skip) {
+      getLog().info("APILyzer execution skipped");
+      return;
+    }
+
+    List<MavenProject> selected = selectModules();
+
+    Set<String> classPathElements = new LinkedHashSet<>();
+    Map<String, ModuleAnalysis> moduleOfClass = new HashMap<>();
+    List<ModuleAnalysis> analyses = new ArrayList<>();
+    try {
+      for (MavenProject module : selected) {
+        classPathElements.addAll(module.getCompileClasspathElements());
+        ModuleAnalysis analysis = new ModuleAnalysis(module.getArtifactId(),
+            new File(module.getBuild().getDirectory(), moduleOutputFileName));
+        analyses.add(analysis);
+        for (String className : classesIn(Paths.get(module.getBuild().getOutputDirectory()))) {
+          moduleOfClass.putIfAbsent(className, analysis);
+        }
+      }
+    } catch (UncheckedIOException | DependencyResolutionRequiredException e) {
+      throw new MojoExecutionException("Error resolving reactor classpath", e);
+    }
+
+    List<String> elements = new ArrayList<>(classPathElements);
+    try (URLClassLoader classLoader = ClassUtils.getClassLoader(elements)) {
+      analyze(findPublicApi(classLoader, elements), analyses, moduleOfClass);
+    } catch (IOException | IllegalArgumentException e) {
+      throw new MojoExecutionException("Error loading reactor classpath", e);
+    }
+  }
+
+  private void analyze(PublicApi publicApi, List<ModuleAnalysis> analyses,
+      Map<String, ModuleAnalysis> moduleOfClass)
+      throws MojoFailureException, MojoExecutionException {
+    if (publicApi.isEmpty()) {
+      throw new MojoExecutionException("No public API types were matched");
+    }
+
+    // API types found in dependencies, rather than in a selected module, are only reported in the
+    // combined report
+    ModuleAnalysis dependencies = new ModuleAnalysis("(dependencies)", null);
+    analyses.add(dependencies);
+    publicApi.classStream()
+        .forEach(c -> moduleOfClass.getOrDefault(c.getName(), dependencies).classes.add(c));
+
+    ReferenceIndex referenceIndex = new ReferenceIndex();
+    Map<ModuleAnalysis, Apilyzer> apilyzers = new HashMap<>();
+    for (ModuleAnalysis analysis : analyses) {
+      Apilyzer apilyzer = newApilyzer(publicApi, analysis.problems::add);
+      apilyzer.setReferenceIndex(referenceIndex);
+      apilyzers.put(analysis, apilyzer);
+    }
+    analyses.parallelStream()
+        .forEach(analysis -> apilyzers.get(analysis).check(analysis.classes.stream()));
+    writeReferenceIndex(referenceIndex, referenceIndexFile);
+
+    long problemCount = 0;
+    for (ModuleAnalysis analysis : analyses) {
+      problemCount += analysis.problems.size();
+      if (analysis.reportFile != null) {
+        writeReport(analysis.reportFile, analysis.classes.stream().map(Class::getName).sorted(),
+            List.of(analysis));
+        getLog().info("APILyzer found " + analysis.problems.size() + " problem"
+            + (analysis.problems.size() == 1 ? "" : "s") + " in " + analysis.name + ".");
+      }
+    }
+    writeReport(new File(outputFile), publicApi.nameStream(), analyses);
+    reportResult(problemCount, outputFile);
+  }
+
+  private List<MavenProject> selectModules() throws MojoExecutionException {
+    List<MavenProject> selected;
+    if (modules.isEmpty()) {
+      selected = reactorProjects.stream().filter(p -> !"pom".equals(p.getPackaging()))
+          .collect(Collectors.toList());
+    } else {
+      selected = reactorProjects.stream().filter(p -> modules.contains(p.getArtifactId()))
+          .collect(Collectors.toList());
+      List<String> missing = new ArrayList<>(modules);
+      selected.forEach(p -> missing.remove(p.getArtifactId()));
+      if (!missing.isEmpty()) {
+        throw new MojoExecutionException("Modules not found in the reactor: " + missing);
+      }
+    }
+    if (selected.isEmpty()) {
+      throw new MojoExecutionException("No reactor modules were selected for analysis");
+    }
+    return selected;
+  }
+
+  // the classes in a module's output directory, named as they are on the combined class path
+  private static List<String> classesIn(Path outputDirectory) {
+    if (!Files.isDirectory(outputDirectory)) {
+      return Collections.emptyList();
+    }
+    try (Stream<ClassEntry> entries = ClassPathScanner.directoryEntries(outputDirectory)) {
+      return entries.map(entry -> entry.name).collect(Collectors.toList());
+    }
+  }
+
+  private void writeReport(File reportFile, Stream<String> publicApiNames,
+      List<ModuleAnalysis> analyses) throws MojoExecutionException {
+    File parent = reportFile.getAbsoluteFile().getParentFile();
+    if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+      throw new MojoExecutionException("Unable to create directory " + parent);
+    }
+    long count = analyses.stream().mapToLong(analysis -> analysis.problems.size()).sum();
+    try {
+      writeReportFile(reportFile.getPath(), path -> {
+        try (PrintStream out = new PrintStream(path.toFile(), UTF_8)) {
+          writeReportHeader(out, publicApiNames);
+          for (ModuleAnalysis analysis : analyses) {
+            analysis.problems.forEach(problem -> writeProblem(out, problem));
+          }
+          writeReportFooter(out, count);
+        }
+      });
+    } catch (IOException e) {
+      throw new MojoExecutionException("Bad configuration: cannot create report " + reportFile, e);
+    }
+  }
+
+}
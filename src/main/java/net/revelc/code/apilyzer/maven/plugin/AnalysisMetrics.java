@@ -0,0 +1,86 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.apilyzer.maven.plugin;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The timings of the phases of an analysis, and other measurements, written as a sorted properties
+ * file so builds can compare them with a reference.
+ */
+class AnalysisMetrics {
+
+  private final Map<String, Long> values = new TreeMap<>();
+  private final long start = System.nanoTime();
+  private long phaseStart = start;
+
+  AnalysisMetrics() {
+    // measure the peak heap usage of the analysis, rather than of everything built before it
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        pool.resetPeakUsage();
+      }
+    }
+  }
+
+  /**
+   * Record the time since the previous phase ended, or since the analysis started, as the duration
+   * of the named phase.
+   */
+  void phase(String name) {
+    long now = System.nanoTime();
+    values.put(name + ".millis", TimeUnit.NANOSECONDS.toMillis(now - phaseStart));
+    phaseStart = now;
+  }
+
+  /**
+   * Record a count, such as the number of public API types.
+   */
+  void count(String name, long value) {
+    values.put(name, value);
+  }
+
+  /**
+   * Write the metrics to the given file, along with the total time since the analysis started, and
+   * the peak heap usage of this JVM since then.
+   */
+  void write(String file) throws IOException {
+    values.put("total.millis", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    long peakHeap = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+        peakHeap += pool.getPeakUsage().getUsed();
+      }
+    }
+    values.put("heap.peak.bytes", peakHeap);
+
+    try (PrintStream out = new PrintStream(Files.newOutputStream(Paths.get(file)), false, UTF_8)) {
+      out.println("# APILyzer analysis metrics");
+      values.forEach((key, value) -> out.println(key + "=" + value));
+    }
+  }
+
+}
@@ -16,177 +16,160 @@ package net.revelc.code.apilyzer.maven.plugin;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
-import com.google.common.reflect.ClassPath;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import net.revelc.code.apilyzer.ApiManifest;
 import net.revelc.code.apilyzer.Apilyzer;
+import net.revelc.code.apilyzer.MemberCache;
 import net.revelc.code.apilyzer.PublicApi;
+import net.revelc.code.apilyzer.ReferenceIndex;
+import net.revelc.code.apilyzer.events.ReportWriteEvent;
 import net.revelc.code.apilyzer.problems.Problem;
+import net.revelc.code.apilyzer.util.ClassEntry;
 import net.revelc.code.apilyzer.util.ClassUtils;
+import net.revelc.code.apilyzer.util.Fingerprint;
 import org.apache.maven.artifact.DependencyResolutionRequiredException;
-import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.plugin.MojoExecution;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.plugins.annotations.ResolutionScope;
 import org.apache.maven.project.MavenProject;
+import org.apache.maven.project.MavenProjectHelper;
 
 /**
  * Analyzes declared public API in a Maven build.
  */
 @Mojo(name = "analyze", defaultPhase = LifecyclePhase.VERIFY,
     requiresDependencyResolution = ResolutionScope.COMPILE, threadSafe = true)
-public class AnalyzeMojo extends AbstractMojo {
+public class AnalyzeMojo extends AbstractApilyzerMojo {
 
   @Parameter(defaultValue = "${project}", readonly = true)
   private MavenProject project;
 
+  @Parameter(defaultValue = "${session}", readonly = true)
+  private MavenSession session;
+
+  @Parameter(defaultValue = "${mojoExecution}", readonly = true)
+  private MojoExecution mojoExecution;
+
+  @Component
+  private MavenProjectHelper projectHelper;
+
   /**
-   * The classes to include in your public API definition. These classes will be included in the
-   * analysis. The format is java regular expressions. Any classes on the classpath whose
-   * fully-qualified class name matches any of these regular expressions, and does not match any of
-   * those in the excludes, will be included for analysis.
-   *
-   * <p>Matching is done with the regular expression anchored to the beginning and end of the
-   * fully-qualified class name, so there is no need to prefix with {@code ^} or suffix with
-   * {@code $}. To match a partial class name, you will need to add {@code .*} as a prefix and/or
-   * suffix.
-   *
-   * <p>If an include pattern matches a class, then that class along with all of its public or
-   * protected inner classes are added to the public API definition. If you do not wish for a
-   * particular inner class to be in the public API then you can add a more specific exclusion for
-   * it. For example could include {@code com.foo.C} and exclude {@code com.foo.C$I1} if the inner
-   * class {@code C$I1} ends up in the API when it's not wanted.
-   *
-   * <p>Example:
-   *
-   * <pre>
-   * {@code
-   * <configuration>
-   *   ...
-   *   <includes>
-   *     <include>org[.]apache[.].*</include>
-   *     <include>com[.]example[.]myproject[.].*</include>
-   *   </includes>
-   *   ...
-   * </configuration>
-   * }
-   * </pre>
-   *
-   * @since 1.0.0
+   * The type of the attached API manifest artifact.
    */
-  @Parameter(alias = "includes")
-  private List<String> includes = Collections.emptyList();
+  private static final String MANIFEST_TYPE = "manifest";
 
   /**
-   * The classes to exclude from your public API definition, which may have otherwise matched your
-   * includes. The format is the same as {@link #includes}.
-   *
-   * <p>Example:
-   *
-   * <pre>
-   * {@code
-   * <configuration>
-   *   ...
-   *   <excludes>
-   *     <exclude>.*[.]impl[.].*</exclude>
-   *   </excludes>
-   *   ...
-   * </configuration>
-   * }
-   * </pre>
-   *
-   * @since 1.0.0
+   * The classifier of the attached API manifest artifact, which is followed by the profile name
+   * for the manifest of a profile.
    */
-  @Parameter(alias = "excludes")
-  private List<String> excludes = Collections.emptyList();
+  private static final String MANIFEST_CLASSIFIER = "apilyzer";
 
   /**
-   * The additional classes, which are allowed to be referenced in your public API, but are not,
-   * themselves, declared as part of your API. For example, these may be objects from a standard
-   * library, which you utilize as parameters in your API methods.
-   *
-   * <p>These follow the same format as {@link #includes} and {@link #excludes}.
-   *
-   * <p>Example:
-   *
-   * <pre>
-   * {@code
-   * <configuration>
-   *   ...
-   *   <allows>
-   *     <allow>com[.]google[.]common[.].*</allow>
-   *   </allows>
-   *   ...
-   * </configuration>
-   * }
-   * </pre>
+   * The absolute path for the report file.
    *
    * @since 1.0.0
    */
-  @Parameter(alias = "allows")
-  private List<String> allows = Collections.emptyList();
+  @Parameter(alias = "outputFile", property = "apilyzer.outputFile",
+      defaultValue = "${project.build.directory}/apilyzer.txt")
+  private String outputFile;
 
   /**
-   * Allows skipping execution of this plugin. This may be useful for testing, or if you find that
-   * analysis is taking too long.
+   * The absolute path for the reference index file. This index maps each type referenced by the
+   * public API to the API members which reference it, and can be queried with the {@code query}
+   * goal without re-running the analysis.
    *
-   * @since 1.0.0
+   * @since 1.4.0
    */
-  @Parameter(alias = "skip", property = "apilyzer.skip", defaultValue = "false")
-  private boolean skip;
+  @Parameter(alias = "referenceIndexFile", property = "apilyzer.referenceIndexFile",
+      defaultValue = "${project.build.directory}/apilyzer.idx")
+  private String referenceIndexFile;
 
   /**
-   * Controls whether API items marked with the {@link Deprecated} annotation are ignored. By
-   * default, these are ignored (excluded from analysis). One useful way to make use of this plugin
-   * is to use it to help identify API methods which should be deprecated (and eventually removed)
-   * because they are using unexpected and problematic classes. Once found, they can be deprecated
-   * and excluded from future analysis.
+   * Allows checking the public API while it is still being discovered. The project's own classes
+   * are scanned first, and each public API class is checked as soon as it has been found, while the
+   * dependency jars are still being scanned. Classes which were found to reference types added to
+   * the public API later are checked again at the end, so the report is the same as without this
+   * option.
    *
-   * @since 1.0.0
+   * @since 1.4.0
    */
-  @Parameter(alias = "ignoreDeprecated", property = "apilyzer.ignoreDeprecated",
-      defaultValue = "true")
-  private boolean ignoreDeprecated;
+  @Parameter(alias = "pipelined", property = "apilyzer.pipelined", defaultValue = "false")
+  private boolean pipelined;
 
   /**
-   * The absolute path for the report file.
+   * Allows skipping the analysis when nothing changed since the last run. A fingerprint of the
+   * configuration and of every compile class path element, including the project's output
+   * directory, is recorded with the result of each analysis, in {@code apilyzer-<id>.fingerprint}
+   * in the build directory, where {@code <id>} is the id of the execution. If it matches on the
+   * next run of the same execution, and the report and reference index still exist, they are
+   * reused without scanning or loading any classes, and the previous result is reported again.
    *
-   * @since 1.0.0
+   * @since 1.4.0
    */
-  @Parameter(alias = "outputFile", property = "apilyzer.outputFile",
-      defaultValue = "${project.build.directory}/apilyzer.txt")
-  private String outputFile;
+  @Parameter(alias = "upToDateCheck", property = "apilyzer.upToDateCheck", defaultValue = "true")
+  private boolean upToDateCheck;
 
   /**
-   * Allows ignoring the problems found. If this is set to true, then the report will still be
-   * created, but the plugin will not cause the build to fail.
+   * The absolute path for a file recording the duration of each phase of the analysis, the number
+   * of public API types and problems, the peak heap usage during the analysis, and whether a
+   * shared dependency class loader was reused along with the number of them open, as properties.
+   * The peak heap usage is that of the whole JVM, so it includes other executions running in
+   * parallel. If not set, no metrics are written. Nothing is written when the analysis is skipped
+   * because its inputs are unchanged.
    *
-   * @since 1.0.0
+   * @since 1.4.0
    */
-  @Parameter(alias = "ignoreProblems", property = "apilyzer.ignoreProblems", defaultValue = "false")
-  private boolean ignoreProblems;
+  @Parameter(alias = "metricsFile", property = "apilyzer.metricsFile")
+  private String metricsFile;
 
   /**
-   * This option enables including classes in your public API definition based on class level
-   * annotations. This option takes one or more regular expression. Annotations are discovered using
-   * reflection, so annotations scoped to compile may not be seen. For each regular expression
-   * {@link java.lang.String#matches(java.lang.String)} is called to compare with each annotation's
-   * class name prefixed with the '@' character. If any annotation matches any regular expression
-   * and it does not match any exclusion, then its included as an API type.
+   * Allows analyzing with bounded memory, by loading and checking the public API classes this
+   * many at a time. Only the names of the public API classes are kept, and each batch is loaded by
+   * a new class loader for the project's output directory, which is discarded afterwards so its
+   * classes can be unloaded. The dependencies are loaded once, by a class loader shared by all
+   * batches, so public API classes from the dependencies are not unloaded. Problems are reported
+   * in the order of the public API class names. If not positive, all public API classes are loaded
+   * together and kept until the analysis is finished.
    *
-   * <p>This section of the configuration is ORed with the {@code <includes>} section. So if a class
-   * matches something in either section (and its not excluded), then its included in the API
-   * definition.
-   *
-   * <p>This section has the same behavior with inner classes as {@code <includes>}.
+   * @since 1.4.0
+   */
+  @Parameter(alias = "batchSize", property = "apilyzer.batchSize", defaultValue = "0")
+  private int batchSize;
+
+  /**
+   * Named public API definitions to analyze together, each with its own report, instead of the one
+   * configured for this execution. The class path is scanned once, and each class is loaded and
+   * reflected on once, while the public API and the allowed types are decided for each profile
+   * separately. Any setting not configured for a profile is taken from this execution's
+   * configuration. The build fails if any profile has problems, unless they are ignored. The
+   * {@link #pipelined} and {@link #batchSize} options do not apply to profiles.
    *
    * <p>Example:
    *
@@ -194,43 +177,109 @@ public class AnalyzeMojo extends AbstractMojo {
    * {@code
    * <configuration>
    *   ...
-   *   <includeAnnotations>
-   *     <include>[@]com[.]proj42[.]Public.*</include>
-   *   </includeAnnotations>
+   *   <profiles>
+   *     <profile>
+   *       <name>stable</name>
+   *       <includeAnnotations>
+   *         <include>[@]com[.]proj42[.]Stable</include>
+   *       </includeAnnotations>
+   *     </profile>
+   *     <profile>
+   *       <name>spi</name>
+   *       <includes>
+   *         <include>com[.]proj42[.]spi[.].*</include>
+   *       </includes>
+   *     </profile>
+   *   </profiles>
    *   ...
    * </configuration>
    * }
    * </pre>
    *
-   * @since 1.1.0
+   * @since 1.4.0
    */
-  @Parameter(alias = "includeAnnotations")
-  private List<String> includeAnnotations = Collections.emptyList();
+  @Parameter(alias = "profiles")
+  private List<Profile> profiles = Collections.emptyList();
 
   /**
-   * Exclude classes from public API definition using annotation.
+   * Allows sharing the class loader for the project's dependencies with the other modules of the
+   * build which have the same dependencies, so the classes they have in common are loaded once per
+   * build instead of once per module. The project's own classes are then loaded by a class loader
+   * of their own, which still looks for classes in the project's output directory before the
+   * dependencies. A shared class loader is closed as soon as no execution still to come in the
+   * build is in a project which declares the same dependencies as a project which used it, so
+   * loaders which no later project is likely to reuse do not stay open.
    *
-   * <p>Example:
+   * @since 1.4.0
+   */
+  @Parameter(alias = "shareDependencyClassLoader",
+      property = "apilyzer.shareDependencyClassLoader", defaultValue = "true")
+  private boolean shareDependencyClassLoader;
+
+  /**
+   * Controls whether the names of the public API types are written to an API manifest, and
+   * attached to the build with the classifier {@code apilyzer} and the type {@code manifest}, so
+   * they are installed and deployed with the project's artifacts. Projects which use this project's
+   * API can then allow exactly its types with a {@code manifest:} entry in their {@code allows},
+   * rather than repeating its definition. The manifest of each of the {@link #profiles} is written
+   * to its {@code manifestFile}, by default {@code apilyzer-<name>.manifest} in the build
+   * directory, and attached with the classifier {@code apilyzer-<name>}.
    *
-   * <pre>
-   * {@code
-   * <configuration>
-   *   ...
-   *   <excludeAnnotations>
-   *     <exclude>[@]com[.]proj42[.]Alpha.*</exclude>
-   *   </excludeAnnotations>
-   *   ...
-   * </configuration>
-   * }
-   * </pre>
+   * @since 1.4.0
+   */
+  @Parameter(alias = "attachManifest", property = "apilyzer.attachManifest",
+      defaultValue = "false")
+  private boolean attachManifest;
+
+  /**
+   * The absolute path for the API manifest file, written if {@link #attachManifest} is set.
    *
-   * @see AnalyzeMojo#includeAnnotations
-   * @since 1.1.0
+   * @since 1.4.0
    */
-  @Parameter(alias = "excludeAnnotations")
-  private List<String> excludeAnnotations = Collections.emptyList();
+  @Parameter(alias = "manifestFile", property = "apilyzer.manifestFile",
+      defaultValue = "${project.build.directory}/apilyzer.manifest")
+  private String manifestFile;
 
-  private static final String FORMAT = "  %-20s %-60s %-35s %s%n";
+  // the dependency scopes on the compile class path
+  private static final Set<String> COMPILE_SCOPES = Set.of("compile", "provided", "system");
+
+  private List<Profile> resolvedProfiles;
+  private AnalysisMetrics metrics;
+
+  /**
+   * A report being written, which is recorded as a single {@link ReportWriteEvent} from the start
+   * of its header to the end of its footer.
+   */
+  private static class Report {
+
+    private final PrintStream out;
+    private final String file;
+    private final ReportWriteEvent event = new ReportWriteEvent();
+    private final AtomicLong problemCount = new AtomicLong(0);
+
+    Report(PrintStream out, String file) {
+      this.out = out;
+      this.file = file;
+    }
+
+    void header(Profile profile, Stream<String> publicApiNames) {
+      event.begin();
+      writeReportHeader(out, profile, publicApiNames);
+    }
+
+    void problem(Problem problem) {
+      problemCount.incrementAndGet();
+      writeProblem(out, problem);
+    }
+
+    long finish() {
+      long count = problemCount.get();
+      writeReportFooter(out, count);
+      commitReportWrite(event, file);
+      return count;
+    }
+
+  }
 
   @Override
   public void execute() throws MojoFailureException, MojoExecutionException {
@@ -240,68 +289,459 @@ public class AnalyzeMojo extends AbstractMojo {
       return;
     }
 
-    ClassPath classPath;
+    resolvedProfiles = resolveProfiles();
+    String reportFiles = resolvedProfiles.isEmpty() ? outputFile
+        : resolvedProfiles.stream().map(profile -> profile.outputFile)
+            .collect(Collectors.joining(", "));
+
+    List<String> classPathElements;
     try {
-      classPath = ClassUtils.getClassPath(project.getCompileClasspathElements());
-    } catch (IOException | DependencyResolutionRequiredException | IllegalArgumentException e) {
+      classPathElements = project.getCompileClasspathElements();
+    } catch (DependencyResolutionRequiredException e) {
       throw new MojoExecutionException("Error resolving project classpath", e);
     }
 
-    try (PrintStream out = new PrintStream(new File(outputFile), UTF_8)) {
+    // each execution of the goal in a project records its own inputs
+    Path fingerprintFile = Paths.get(project.getBuild().getDirectory(),
+        "apilyzer-" + mojoExecution.getExecutionId() + ".fingerprint");
+    String fingerprint = null;
+    if (upToDateCheck) {
+      fingerprint = fingerprint(classPathElements);
+      Long previousProblemCount = readPreviousResult(fingerprintFile, fingerprint);
+      if (previousProblemCount != null) {
+        getLog().info("APILyzer inputs are unchanged; reusing the previous analysis");
+        attachManifests();
+        reportResult(previousProblemCount, reportFiles);
+        return;
+      }
+    }
+
+    try {
+      Files.deleteIfExists(fingerprintFile);
+    } catch (IOException e) {
+      throw new MojoExecutionException("Unable to delete " + fingerprintFile, e);
+    }
+    metrics = new AnalysisMetrics();
+    long problemCount = analyze(classPathElements);
+    if (fingerprint != null) {
+      writeResult(fingerprintFile, fingerprint, problemCount);
+    }
+    if (metricsFile != null && !metricsFile.isEmpty()) {
+      metrics.count("problems", problemCount);
+      try {
+        metrics.write(metricsFile);
+      } catch (IOException e) {
+        throw new MojoExecutionException("Bad configuration: cannot create specified metricsFile",
+            e);
+      }
+    }
+    attachManifests();
+    reportResult(problemCount, reportFiles);
+  }
+
+  private void writeManifest(PublicApi publicApi, String file) throws MojoExecutionException {
+    if (!attachManifest) {
+      return;
+    }
+    try {
+      writeReportFile(file, path -> ApiManifest.write(path, publicApi.nameStream()));
+    } catch (IOException e) {
+      throw new MojoExecutionException("Bad configuration: cannot create API manifest " + file, e);
+    }
+  }
+
+  private void attachManifests() {
+    if (!attachManifest) {
+      return;
+    }
+    if (resolvedProfiles.isEmpty()) {
+      projectHelper.attachArtifact(project, MANIFEST_TYPE, MANIFEST_CLASSIFIER,
+          new File(manifestFile));
+    }
+    for (Profile profile : resolvedProfiles) {
+      projectHelper.attachArtifact(project, MANIFEST_TYPE,
+          MANIFEST_CLASSIFIER + "-" + profile.name, new File(profile.manifestFile));
+    }
+  }
+
+  private List<Profile> resolveProfiles() throws MojoExecutionException {
+    Profile configured = configuredProfile();
+    String buildDirectory = project.getBuild().getDirectory();
+    Set<String> names = new HashSet<>();
+    List<Profile> resolved = new ArrayList<>();
+    for (Profile profile : profiles) {
+      if (profile.name == null || profile.name.isEmpty() || !names.add(profile.name)) {
+        throw new MojoExecutionException(
+            "Bad configuration: each profile must have a unique name; found " + profile.name);
+      }
+      Profile r = new Profile();
+      r.name = profile.name;
+      r.includes = profile.includes != null ? profile.includes : configured.includes;
+      r.excludes = profile.excludes != null ? profile.excludes : configured.excludes;
+      r.allows = profile.allows != null ? profile.allows : configured.allows;
+      r.includeAnnotations = profile.includeAnnotations != null ? profile.includeAnnotations
+          : configured.includeAnnotations;
+      r.excludeAnnotations = profile.excludeAnnotations != null ? profile.excludeAnnotations
+          : configured.excludeAnnotations;
+      r.outputFile = profile.outputFile != null ? profile.outputFile
+          : Paths.get(buildDirectory, "apilyzer-" + profile.name + ".txt").toString();
+      r.referenceIndexFile = profile.referenceIndexFile != null ? profile.referenceIndexFile
+          : Paths.get(buildDirectory, "apilyzer-" + profile.name + ".idx").toString();
+      r.manifestFile = profile.manifestFile != null ? profile.manifestFile
+          : Paths.get(buildDirectory, "apilyzer-" + profile.name + ".manifest").toString();
+      resolved.add(r);
+    }
+    return resolved;
+  }
 
-      out.println("Includes: " + includes);
-      out.println("IncludeAnnotations: " + includeAnnotations);
-      out.println("ExcludesAnnotations: " + excludeAnnotations);
-      out.println("Excludes: " + excludes);
-      out.println("Allowed: " + allows);
+  private long analyze(List<String> classPathElements) throws MojoExecutionException {
 
-      PublicApi publicApi = PublicApi.fromClassPath(classPath, includes, excludes,
-          includeAnnotations, excludeAnnotations);
+    if (!resolvedProfiles.isEmpty()) {
+      return analyzeProfiles(classPathElements);
+    }
+
+    if (batchSize > 0) {
+      try (PrintStream out = new PrintStream(new File(outputFile), UTF_8)) {
+        return checkBatched(classPathElements, out);
+      } catch (IOException e) {
+        throw new MojoExecutionException("Bad configuration: cannot create specified outputFile",
+            e);
+      }
+    }
+
+    URLClassLoader classLoader = newClassLoader(classPathElements);
+
+    try (classLoader; PrintStream out = new PrintStream(new File(outputFile), UTF_8)) {
+
+      if (pipelined) {
+        return checkPipelined(classLoader, classPathElements, out);
+      }
+
+      PublicApi publicApi = findPublicApi(classLoader, classPathElements);
+      metrics.phase("discover");
 
       if (publicApi.isEmpty()) {
         throw new MojoExecutionException("No public API types were matched");
       }
+      metrics.count("apiTypes", publicApi.nameStream().count());
 
-      out.println();
-      out.println("Public API:");
-      publicApi.nameStream().map(item -> "  " + item).forEach(out::println);
-      out.println();
-      out.println("Problems : ");
-      out.println();
-      out.printf(FORMAT, "CONTEXT", "TYPE", "FIELD/METHOD", "NON-PUBLIC REFERENCE");
-      out.println();
-
-      AtomicLong problemCounter = new AtomicLong(0);
+      Report report = new Report(out, outputFile);
+      report.header(configuredProfile(), publicApi.nameStream());
 
       // look for public API methods/fields/subclasses that use classes not in public API
-      Consumer<Problem> problemConsumer = problem -> {
-        problemCounter.incrementAndGet();
-        out.printf(FORMAT, problem.problemType, problem.contextClass.getName(), problem.memberName,
-            problem.nonPublicType.getName());
-      };
-      new Apilyzer(publicApi, allows, ignoreDeprecated, problemConsumer).check();
-
-      long problemCount = problemCounter.get();
-
-      out.println();
-      out.println("Total : " + problemCount);
-
-      String msg =
-          "APILyzer found " + problemCount + " problem" + (problemCount == 1 ? "" : "s") + ".";
-      msg += " See " + outputFile + " for details.";
-      if (problemCount < 0) {
-        throw new AssertionError("Inconceivable!");
-      } else if (problemCount == 0) {
-        getLog().info(msg);
-      } else if (problemCount > 0 && ignoreProblems) {
-        getLog().warn(msg);
-      } else {
-        getLog().error(msg);
-        throw new MojoFailureException(msg);
-      }
+      ReferenceIndex referenceIndex = new ReferenceIndex();
+      Apilyzer apilyzer = newApilyzer(publicApi, report::problem);
+      apilyzer.setReferenceIndex(referenceIndex);
+      apilyzer.check();
+      metrics.phase("check");
+
+      long problemCount = report.finish();
+      writeReferenceIndex(referenceIndex, referenceIndexFile);
+      writeManifest(publicApi, manifestFile);
+      metrics.phase("report");
+      return problemCount;
     } catch (IOException e) {
       throw new MojoExecutionException("Bad configuration: cannot create specified outputFile", e);
     }
   }
 
+  private String fingerprint(List<String> classPathElements) throws MojoExecutionException {
+    // the compile class path elements include the project's output directory
+    Fingerprint fingerprint = configurationFingerprint().add("outputFile", outputFile)
+        .add("referenceIndexFile", referenceIndexFile).add("profiles", resolvedProfiles)
+        .add("shareDependencyClassLoader", shareDependencyClassLoader)
+        .add("attachManifest", attachManifest).add("manifestFile", manifestFile);
+    List<String> manifests = new ArrayList<>(manifestFiles(allows));
+    resolvedProfiles.forEach(profile -> manifests.addAll(manifestFiles(profile.allows)));
+    try {
+      for (String element : classPathElements) {
+        fingerprint.addPath(element);
+      }
+      for (String manifest : manifests) {
+        fingerprint.addPath(manifest);
+      }
+    } catch (IOException e) {
+      throw new MojoExecutionException("Unable to read project classpath", e);
+    }
+    return fingerprint.toString();
+  }
+
+  private Long readPreviousResult(Path fingerprintFile, String fingerprint) {
+    List<String> reports = new ArrayList<>();
+    if (resolvedProfiles.isEmpty()) {
+      reports.add(outputFile);
+      reports.add(referenceIndexFile);
+      if (attachManifest) {
+        reports.add(manifestFile);
+      }
+    }
+    for (Profile profile : resolvedProfiles) {
+      reports.add(profile.outputFile);
+      reports.add(profile.referenceIndexFile);
+      if (attachManifest) {
+        reports.add(profile.manifestFile);
+      }
+    }
+    if (!Files.isRegularFile(fingerprintFile)
+        || !reports.stream().map(Paths::get).allMatch(Files::isRegularFile)) {
+      return null;
+    }
+    Properties previous = new Properties();
+    try (Reader in = Files.newBufferedReader(fingerprintFile, UTF_8)) {
+      previous.load(in);
+      if (fingerprint.equals(previous.getProperty("fingerprint"))) {
+        return Long.valueOf(previous.getProperty("problems"));
+      }
+    } catch (IOException | NumberFormatException e) {
+      getLog().debug("Ignoring unreadable " + fingerprintFile, e);
+    }
+    return null;
+  }
+
+  private void writeResult(Path fingerprintFile, String fingerprint, long problemCount)
+      throws MojoExecutionException {
+    Properties result = new Properties();
+    result.setProperty("fingerprint", fingerprint);
+    result.setProperty("problems", Long.toString(problemCount));
+    try (Writer out = Files.newBufferedWriter(fingerprintFile, UTF_8)) {
+      result.store(out, "APILyzer analysis inputs and result");
+    } catch (IOException e) {
+      throw new MojoExecutionException("Unable to write " + fingerprintFile, e);
+    }
+  }
+
+  private URLClassLoader newClassLoader(List<String> classPathElements)
+      throws MojoExecutionException {
+    if (!shareDependencyClassLoader) {
+      try {
+        return ClassUtils.getClassLoader(classPathElements);
+      } catch (IllegalArgumentException e) {
+        throw new MojoExecutionException("Error resolving project classpath", e);
+      }
+    }
+
+    String outputDirectory = project.getBuild().getOutputDirectory();
+    List<String> dependencyElements = new ArrayList<>(classPathElements);
+    dependencyElements.remove(outputDirectory);
+    DependencyClassLoaders.Lease dependencies = dependencyLoader(dependencyElements);
+    try {
+      return DependencyClassLoaders.projectLoader(Collections.singletonList(outputDirectory),
+          dependencies);
+    } catch (IllegalArgumentException e) {
+      try {
+        dependencies.close();
+      } catch (IOException closeFailure) {
+        e.addSuppressed(closeFailure);
+      }
+      throw new MojoExecutionException("Error resolving project classpath", e);
+    }
+  }
+
+  private DependencyClassLoaders.Lease dependencyLoader(List<String> dependencyElements)
+      throws MojoExecutionException {
+    DependencyClassLoaders.Lease lease;
+    try {
+      if (!shareDependencyClassLoader) {
+        return DependencyClassLoaders.unshared(dependencyElements);
+      }
+      // the request is shared by every project's session, including those of a parallel build
+      lease = DependencyClassLoaders.acquire(dependencyElements, declaredDependencies(project),
+          session.getRequest(), this::plannedExecutions);
+    } catch (IllegalArgumentException e) {
+      throw new MojoExecutionException("Error resolving project classpath", e);
+    } catch (IOException e) {
+      throw new MojoExecutionException("Unable to read project classpath", e);
+    }
+    metrics.count("dependencyLoader.reused", lease.reused() ? 1 : 0);
+    metrics.count("dependencyLoaders.open", DependencyClassLoaders.openLoaders());
+    return lease;
+  }
+
+  // the number of executions of this goal in the build, by the declared dependencies of their
+  // projects, from the executions configured in each project and the goals given to Maven
+  private Map<String, Integer> plannedExecutions() {
+    String goal = mojoExecution.getGoal();
+    String pluginKey = mojoExecution.getMojoDescriptor().getPluginDescriptor().getPluginLookupKey();
+    long invoked = session.getGoals().stream().filter(g -> g.endsWith(":" + goal)).count();
+    Map<String, Integer> planned = new HashMap<>();
+    for (MavenProject p : session.getProjects()) {
+      Plugin plugin = p.getPlugin(pluginKey);
+      long executions = invoked + (plugin == null ? 0
+          : plugin.getExecutions().stream().filter(e -> e.getGoals().contains(goal)).count());
+      if (executions > 0) {
+        planned.merge(declaredDependencies(p), (int) executions, Integer::sum);
+      }
+    }
+    return planned;
+  }
+
+  // the dependencies on the compile class path which are declared by a project, which are known
+  // before they are resolved
+  private static String declaredDependencies(MavenProject p) {
+    return p.getDependencies().stream()
+        .filter(d -> d.getScope() == null || COMPILE_SCOPES.contains(d.getScope()))
+        .map(d -> d.getManagementKey() + ":" + d.getVersion()).sorted()
+        .collect(Collectors.joining(","));
+  }
+
+  private long analyzeProfiles(List<String> classPathElements) throws MojoExecutionException {
+    URLClassLoader classLoader = newClassLoader(classPathElements);
+
+    try (classLoader) {
+      // the class path is enumerated once, and each class is considered for every profile
+      List<PublicApi> publicApis = new ArrayList<>(resolvedProfiles.size());
+      for (Profile profile : resolvedProfiles) {
+        publicApis.add(newPublicApi(classLoader, profile));
+      }
+      try (Stream<ClassEntry> entries = classEntries(classPathElements)) {
+        entries.forEach(entry -> publicApis.forEach(publicApi -> publicApi.add(entry)));
+      }
+      metrics.phase("discover");
+
+      // classes loaded for one profile are found by the class loader for the others, and their
+      // members are only reflected on once
+      MemberCache memberCache = new MemberCache();
+      long problemCount = 0;
+      for (int i = 0; i < resolvedProfiles.size(); i++) {
+        problemCount += analyzeProfile(resolvedProfiles.get(i), publicApis.get(i), memberCache);
+      }
+      return problemCount;
+    } catch (IOException e) {
+      throw new MojoExecutionException("Unable to close project class loader", e);
+    }
+  }
+
+  private long analyzeProfile(Profile profile, PublicApi publicApi, MemberCache memberCache)
+      throws MojoExecutionException {
+    String prefix = "profile." + profile.name + ".";
+    if (publicApi.isEmpty()) {
+      throw new MojoExecutionException(
+          "No public API types were matched for profile " + profile.name);
+    }
+    metrics.count(prefix + "apiTypes", publicApi.nameStream().count());
+
+    try (PrintStream out = new PrintStream(new File(profile.outputFile), UTF_8)) {
+      Report report = new Report(out, profile.outputFile);
+      report.header(profile, publicApi.nameStream());
+
+      ReferenceIndex referenceIndex = new ReferenceIndex();
+      Apilyzer apilyzer = newApilyzer(publicApi, profile.allows, report::problem);
+      apilyzer.setReferenceIndex(referenceIndex);
+      apilyzer.setMemberCache(memberCache);
+      apilyzer.check();
+
+      long problemCount = report.finish();
+      writeReferenceIndex(referenceIndex, profile.referenceIndexFile);
+      writeManifest(publicApi, profile.manifestFile);
+      metrics.count(prefix + "problems", problemCount);
+      metrics.phase(prefix + "check");
+      getLog().info("APILyzer profile " + profile.name + " has " + problemCount + " problem"
+          + (problemCount == 1 ? "" : "s") + "; see " + profile.outputFile);
+      return problemCount;
+    } catch (IOException e) {
+      throw new MojoExecutionException(
+          "Bad configuration: cannot create outputFile of profile " + profile.name, e);
+    }
+  }
+
+  private long checkBatched(List<String> classPathElements, PrintStream out)
+      throws MojoExecutionException, IOException {
+
+    String outputDirectory = project.getBuild().getOutputDirectory();
+    List<String> dependencyElements = new ArrayList<>(classPathElements);
+    dependencyElements.remove(outputDirectory);
+    List<String> projectElements = Collections.singletonList(outputDirectory);
+
+    try (DependencyClassLoaders.Lease dependencies = dependencyLoader(dependencyElements)) {
+      ClassLoader dependencyLoader = dependencies.loader();
+      PublicApi publicApi = newPublicApi(dependencyLoader);
+      publicApi.setRetainClasses(false);
+      try (Stream<ClassEntry> entries = classEntries(classPathElements)) {
+        Iterator<ClassEntry> iterator = entries.iterator();
+        while (iterator.hasNext()) {
+          List<ClassEntry> batch = new ArrayList<>(batchSize);
+          while (iterator.hasNext() && batch.size() < batchSize) {
+            batch.add(iterator.next());
+          }
+          try (URLClassLoader batchLoader =
+              DependencyClassLoaders.projectLoader(projectElements, dependencyLoader)) {
+            publicApi.setClassLoader(batchLoader);
+            publicApi.addClasses(batch.stream(), clazz -> {});
+          }
+        }
+      }
+      publicApi.setClassLoader(dependencyLoader);
+      metrics.phase("discover");
+
+      if (publicApi.isEmpty()) {
+        throw new MojoExecutionException("No public API types were matched");
+      }
+      metrics.count("apiTypes", publicApi.nameStream().count());
+
+      Report report = new Report(out, outputFile);
+      report.header(configuredProfile(), publicApi.nameStream());
+
+      ReferenceIndex referenceIndex = new ReferenceIndex();
+      List<String> names = publicApi.nameStream().collect(Collectors.toList());
+      for (int i = 0; i < names.size(); i += batchSize) {
+        try (URLClassLoader batchLoader =
+            DependencyClassLoaders.projectLoader(projectElements, dependencyLoader)) {
+          List<Class<?>> classes = new ArrayList<>(batchSize);
+          for (String name : names.subList(i, Math.min(i + batchSize, names.size()))) {
+            classes.add(batchLoader.loadClass(name));
+          }
+          // a new analyzer for each batch, so nothing it caches keeps the batch's classes loaded
+          Apilyzer apilyzer = newApilyzer(publicApi, report::problem);
+          apilyzer.setReferenceIndex(referenceIndex);
+          apilyzer.check(classes.stream());
+        } catch (ClassNotFoundException e) {
+          throw new MojoExecutionException("Unable to load public API class", e);
+        }
+      }
+      metrics.phase("check");
+
+      long problemCount = report.finish();
+      writeReferenceIndex(referenceIndex, referenceIndexFile);
+      writeManifest(publicApi, manifestFile);
+      metrics.phase("report");
+      return problemCount;
+    }
+  }
+
+  private long checkPipelined(ClassLoader classLoader, List<String> classPathElements,
+      PrintStream out) throws MojoExecutionException {
+
+    // scan the project's own classes first, so most of the public API is found early
+    String outputDirectory = project.getBuild().getOutputDirectory();
+    List<String> scanOrder = new ArrayList<>(classPathElements);
+    if (scanOrder.remove(outputDirectory)) {
+      scanOrder.add(0, outputDirectory);
+    }
+
+    PublicApi publicApi = newPublicApi(classLoader);
+    Report report = new Report(out, outputFile);
+    ReferenceIndex referenceIndex = new ReferenceIndex();
+    Apilyzer apilyzer = newApilyzer(publicApi, report::problem);
+    apilyzer.setReferenceIndex(referenceIndex);
+    apilyzer.checkPipelined(found -> publicApi.addClasses(classEntries(scanOrder), found), () -> {
+      metrics.phase("discover");
+      if (!publicApi.isEmpty()) {
+        report.header(configuredProfile(), publicApi.nameStream());
+      }
+    });
+
+    metrics.phase("check");
+
+    if (publicApi.isEmpty()) {
+      throw new MojoExecutionException("No public API types were matched");
+    }
+    metrics.count("apiTypes", publicApi.nameStream().count());
+
+    long problemCount = report.finish();
+    writeReferenceIndex(referenceIndex, referenceIndexFile);
+    writeManifest(publicApi, manifestFile);
+    metrics.phase("report");
+    return problemCount;
+  }
+
 }
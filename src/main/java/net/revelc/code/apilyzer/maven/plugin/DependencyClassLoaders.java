@@ -0,0 +1,254 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.apilyzer.maven.plugin;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.net.URLClassLoader;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+import net.revelc.code.apilyzer.util.ClassUtils;
+import net.revelc.code.apilyzer.util.Fingerprint;
+
+/**
+ * The class loaders for the dependencies of the projects in a build, shared by the executions of
+ * this plugin so that dependencies common to several modules are only loaded once per build.
+ *
+ * <p>A loader is shared by all executions with the same dependencies, identified by their paths,
+ * sizes and modification times, and is counted as in use until each execution has released it. A
+ * loader which is no longer in use is only kept while executions are still to come in projects
+ * which declare the same dependencies as a project which used it, as they are the only ones likely
+ * to reuse it. The executions to come are counted from the projects of the build when it first uses
+ * this registry. Loaders still open when a new build starts in the same JVM are closed then.
+ *
+ * <p>The project's own classes are loaded by a child of the dependencies' loader, which looks for
+ * each class in the project's output directory before the dependencies, as the single class loader
+ * over the whole class path did.
+ */
+final class DependencyClassLoaders {
+
+  private static class Entry {
+
+    private final String key;
+    private final URLClassLoader loader;
+    // the declared dependencies of the projects which used this loader
+    private final Set<String> users = new HashSet<>();
+    private int leases = 0;
+    private boolean retired = false;
+
+    Entry(String key, URLClassLoader loader) {
+      this.key = key;
+      this.loader = loader;
+    }
+
+  }
+
+  /**
+   * The use of a dependency class loader by one execution, which must be closed when the
+   * execution no longer needs it.
+   */
+  static class Lease implements Closeable {
+
+    private final Entry entry;
+    private final boolean reused;
+    private boolean closed = false;
+
+    private Lease(Entry entry, boolean reused) {
+      this.entry = entry;
+      this.reused = reused;
+    }
+
+    ClassLoader loader() {
+      return entry.loader;
+    }
+
+    /**
+     * Returns true if the loader was used by another execution before this one.
+     */
+    boolean reused() {
+      return reused;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (!closed) {
+        closed = true;
+        release(entry);
+      }
+    }
+
+  }
+
+  // a class loader for the project's own classes, which prefers them to those of its parent, and
+  // releases its parent's lease, if any, when closed
+  private static class ProjectClassLoader extends URLClassLoader {
+
+    private final Lease lease;
+
+    ProjectClassLoader(List<String> projectElements, ClassLoader parent, Lease lease) {
+      super(ClassUtils.getUrls(projectElements), parent);
+      this.lease = lease;
+    }
+
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+      synchronized (getClassLoadingLock(name)) {
+        Class<?> c = findLoadedClass(name);
+        if (c == null) {
+          try {
+            c = findClass(name);
+          } catch (ClassNotFoundException e) {
+            c = getParent().loadClass(name);
+          }
+        }
+        if (resolve) {
+          resolveClass(c);
+        }
+        return c;
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        super.close();
+      } finally {
+        if (lease != null) {
+          lease.close();
+        }
+      }
+    }
+
+  }
+
+  private static final Map<String, Entry> LOADERS = new HashMap<>();
+  private static WeakReference<Object> currentBuild = new WeakReference<>(null);
+  // the number of executions still to come in the current build, by the declared dependencies of
+  // their projects
+  private static Map<String, Integer> pending = new HashMap<>();
+
+  private DependencyClassLoaders() {
+    // do not permit instantiation
+  }
+
+  /**
+   * Use the shared class loader for the given dependencies in the given build, creating it if
+   * necessary.
+   *
+   * @param dependencyElements the dependency jars and directories, in class path order
+   * @param declaredDependencies identifies the dependencies declared by the project, which are
+   *        known for every project of the build before they are resolved
+   * @param build identifies the build, such as the Maven execution request, and must be the same
+   *        object for every project of the build
+   * @param plannedExecutions supplies the number of executions which may use this registry in the
+   *        build, by the declared dependencies of their projects, including this execution; only
+   *        called for the first execution of the build
+   */
+  static synchronized Lease acquire(List<String> dependencyElements, String declaredDependencies,
+      Object build, Supplier<Map<String, Integer>> plannedExecutions) throws IOException {
+    if (currentBuild.get() != build) {
+      for (Entry entry : LOADERS.values()) {
+        if (entry.leases == 0) {
+          entry.loader.close();
+        } else {
+          entry.retired = true;
+        }
+      }
+      LOADERS.clear();
+      currentBuild = new WeakReference<>(build);
+      pending = new HashMap<>(plannedExecutions.get());
+    }
+    pending.computeIfPresent(declaredDependencies, (k, count) -> count > 1 ? count - 1 : null);
+
+    Fingerprint fingerprint = new Fingerprint();
+    for (String element : dependencyElements) {
+      fingerprint.addPath(element);
+    }
+    String key = fingerprint.toString();
+    Entry entry = LOADERS.get(key);
+    boolean reused = entry != null;
+    if (entry == null) {
+      entry = new Entry(key, ClassUtils.getClassLoader(dependencyElements));
+      LOADERS.put(key, entry);
+    }
+    entry.users.add(declaredDependencies);
+    entry.leases++;
+
+    // this execution is no longer to come, so loaders kept for it may no longer be needed
+    for (Iterator<Entry> i = LOADERS.values().iterator(); i.hasNext();) {
+      Entry idle = i.next();
+      if (idle.leases == 0 && !isWanted(idle)) {
+        i.remove();
+        idle.loader.close();
+      }
+    }
+    return new Lease(entry, reused);
+  }
+
+  /**
+   * Returns the number of shared class loaders which are open.
+   */
+  static synchronized int openLoaders() {
+    return LOADERS.size();
+  }
+
+  // whether an execution still to come may reuse the loader
+  private static boolean isWanted(Entry entry) {
+    return entry.users.stream().anyMatch(pending::containsKey);
+  }
+
+  /**
+   * Create a class loader for the given dependencies which is not shared, and is closed as soon as
+   * the returned lease is.
+   */
+  static Lease unshared(List<String> dependencyElements) {
+    Entry entry = new Entry(null, ClassUtils.getClassLoader(dependencyElements));
+    entry.retired = true;
+    entry.leases++;
+    return new Lease(entry, false);
+  }
+
+  /**
+   * Create a class loader for the given project class path elements, as a child of the leased
+   * dependency class loader, which releases the lease when it is closed.
+   */
+  static URLClassLoader projectLoader(List<String> projectElements, Lease lease) {
+    return new ProjectClassLoader(projectElements, lease.loader(), lease);
+  }
+
+  /**
+   * Create a class loader for the given project class path elements, as a child of the given
+   * dependency class loader, which looks for classes in the same order as
+   * {@link #projectLoader(List, Lease)}, but leaves the dependency class loader open when closed.
+   */
+  static URLClassLoader projectLoader(List<String> projectElements, ClassLoader dependencyLoader) {
+    return new ProjectClassLoader(projectElements, dependencyLoader, null);
+  }
+
+  private static synchronized void release(Entry entry) throws IOException {
+    entry.leases--;
+    if (entry.leases == 0 && (entry.retired || !isWanted(entry))) {
+      LOADERS.remove(entry.key, entry);
+      entry.loader.close();
+    }
+  }
+
+}
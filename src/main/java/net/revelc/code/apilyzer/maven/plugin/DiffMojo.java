@@ -0,0 +1,143 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.apilyzer.maven.plugin;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import net.revelc.code.apilyzer.ApiDiff;
+import net.revelc.code.apilyzer.ApiSnapshot;
+import org.apache.maven.artifact.DependencyResolutionRequiredException;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * Compares the declared public API with a snapshot of a previous version, written by the
+ * {@code snapshot} goal, and reports the types and members which were added or removed, and the
+ * members which newly leak types that are neither in the public API nor allowed. The previous
+ * version's classes are not needed.
+ */
+@Mojo(name = "diff", defaultPhase = LifecyclePhase.VERIFY,
+    requiresDependencyResolution = ResolutionScope.COMPILE, threadSafe = true)
+public class DiffMojo extends AbstractApilyzerMojo {
+
+  @Parameter(defaultValue = "${project}", readonly = true)
+  private MavenProject project;
+
+  /**
+   * The snapshot of the previous version of the public API. A released version's snapshot can be
+   * retrieved from a repository, for example with the {@code dependency:copy} goal, using the
+   * classifier {@code apilyzer} and the type {@code snapshot}.
+   *
+   * @since 1.4.0
+   */
+  @Parameter(alias = "baselineSnapshot", property = "apilyzer.baselineSnapshot", required = true)
+  private String baselineSnapshot;
+
+  /**
+   * The snapshot of the current version of the public API. If not set, the public API is found in
+   * the project's classpath, as configured, and compared without writing a snapshot.
+   *
+   * @since 1.4.0
+   */
+  @Parameter(alias = "currentSnapshot", property = "apilyzer.currentSnapshot")
+  private String currentSnapshot;
+
+  /**
+   * The absolute path for the diff report file.
+   *
+   * @since 1.4.0
+   */
+  @Parameter(alias = "diffOutputFile", property = "apilyzer.diffOutputFile",
+      defaultValue = "${project.build.directory}/apilyzer-diff.txt")
+  private String diffOutputFile;
+
+  @Override
+  public void execute() throws MojoFailureException, MojoExecutionException {
+
+    if (skip) {
+      getLog().info("APILyzer execution skipped");
+      return;
+    }
+
+    ApiSnapshot previous = readSnapshot(baselineSnapshot);
+    ApiSnapshot current;
+    if (currentSnapshot != null && !currentSnapshot.isEmpty()) {
+      current = readSnapshot(currentSnapshot);
+    } else {
+      List<String> classPathElements;
+      try {
+        classPathElements = project.getCompileClasspathElements();
+      } catch (DependencyResolutionRequiredException e) {
+        throw new MojoExecutionException("Error resolving project classpath", e);
+      }
+      current = takeSnapshot(classPathElements);
+    }
+
+    ApiDiff diff = ApiDiff.compare(previous, current);
+
+    try {
+      writeReportFile(diffOutputFile, path -> {
+        try (PrintStream out = new PrintStream(path.toFile(), UTF_8)) {
+          out.println("Baseline: " + baselineSnapshot);
+          out.println();
+          writeSection(out, "Added", diff.added());
+          writeSection(out, "Removed", diff.removed());
+          writeSection(out, "Newly leaking", diff.newlyLeaking());
+          out.println("Totals");
+          out.println("Added : " + diff.added().size());
+          out.println("Removed : " + diff.removed().size());
+          out.println("Newly leaking : " + diff.newlyLeaking().size());
+        }
+      });
+    } catch (IOException e) {
+      throw new MojoExecutionException(
+          "Bad configuration: cannot create specified diffOutputFile", e);
+    }
+
+    getLog().info("APILyzer found " + diff.added().size() + " added and "
+        + diff.removed().size() + " removed public API types and members.");
+    reportResult(diff.newlyLeaking().size(), diffOutputFile);
+  }
+
+  private static ApiSnapshot readSnapshot(String file) throws MojoExecutionException {
+    Path path = Paths.get(file);
+    if (!Files.isRegularFile(path)) {
+      throw new MojoExecutionException("API snapshot " + file + " not found");
+    }
+    try {
+      return ApiSnapshot.read(path);
+    } catch (IOException e) {
+      throw new MojoExecutionException("Unable to read API snapshot " + file, e);
+    }
+  }
+
+  private static void writeSection(PrintStream out, String title, List<String> items) {
+    out.println(title + " : ");
+    items.forEach(item -> out.println("  " + item));
+    out.println();
+  }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.apilyzer.maven.plugin;
+
+import java.util.List;
+
+/**
+ * A named public API definition, analyzed along with the other profiles of the same execution.
+ * Each setting which is not configured for a profile is taken from the execution's configuration.
+ */
+public class Profile {
+
+  /**
+   * The name of this profile, which must be unique within an execution.
+   */
+  String name;
+
+  /**
+   * The classes to include in this public API definition.
+   */
+  List<String> includes;
+
+  /**
+   * The classes to exclude from this public API definition.
+   */
+  List<String> excludes;
+
+  /**
+   * The additional classes which are allowed to be referenced by this public API.
+   */
+  List<String> allows;
+
+  /**
+   * The annotations of classes to include in this public API definition.
+   */
+  List<String> includeAnnotations;
+
+  /**
+   * The annotations of classes to exclude from this public API definition.
+   */
+  List<String> excludeAnnotations;
+
+  /**
+   * The absolute path for the report file of this profile. By default, this is
+   * {@code apilyzer-<name>.txt} in the build directory.
+   */
+  String outputFile;
+
+  /**
+   * The absolute path for the reference index file of this profile. By default, this is
+   * {@code apilyzer-<name>.idx} in the build directory.
+   */
+  String referenceIndexFile;
+
+  /**
+   * The absolute path for the API manifest file of this profile, written if the execution attaches
+   * manifests. By default, this is {@code apilyzer-<name>.manifest} in the build directory.
+   */
+  String manifestFile;
+
+  @Override
+  public String toString() {
+    return name + "[includes=" + includes + ", excludes=" + excludes + ", allows=" + allows
+        + ", includeAnnotations=" + includeAnnotations + ", excludeAnnotations="
+        + excludeAnnotations + ", outputFile=" + outputFile + ", referenceIndexFile="
+        + referenceIndexFile + ", manifestFile=" + manifestFile + "]";
+  }
+
+}
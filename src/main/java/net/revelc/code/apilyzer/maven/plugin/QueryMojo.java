@@ -0,0 +1,109 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.apilyzer.maven.plugin;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import net.revelc.code.apilyzer.ReferenceIndex;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+/**
+ * Queries the reference index written by the {@code analyze} goal to find which public API members
+ * expose a given type, without re-running the analysis.
+ */
+@Mojo(name = "query", threadSafe = true)
+public class QueryMojo extends AbstractMojo {
+
+  /**
+   * The reference index file written by the {@code analyze} goal.
+   *
+   * @since 1.4.0
+   */
+  @Parameter(alias = "referenceIndexFile", property = "apilyzer.referenceIndexFile",
+      defaultValue = "${project.build.directory}/apilyzer.idx")
+  private String referenceIndexFile;
+
+  /**
+   * The referenced types to look up. The format is a java regular expression, matched against the
+   * fully-qualified name of each referenced type in the same way as the {@code includes} of the
+   * {@code analyze} goal. If not set, all referenced types are listed with their number of
+   * referencing API members.
+   *
+   * <p>Example:
+   *
+   * <pre>
+   * mvn apilyzer:query -Dapilyzer.type=org[.]foo[.]internal[.]Buffer
+   * </pre>
+   *
+   * @since 1.4.0
+   */
+  @Parameter(alias = "type", property = "apilyzer.type")
+  private String type;
+
+  @Override
+  public void execute() throws MojoExecutionException {
+    Path indexPath = Paths.get(referenceIndexFile);
+    if (!Files.isRegularFile(indexPath)) {
+      throw new MojoExecutionException(
+          "Reference index " + referenceIndexFile + " not found; run the analyze goal first");
+    }
+
+    ReferenceIndex index;
+    try {
+      index = ReferenceIndex.read(indexPath);
+    } catch (IOException e) {
+      throw new MojoExecutionException("Unable to read reference index " + referenceIndexFile, e);
+    }
+
+    if (type == null || type.isEmpty()) {
+      for (String referenced : index.types()) {
+        getLog().info(referenced + " (" + index.referrers(referenced).size() + ")");
+      }
+      return;
+    }
+
+    Pattern pattern;
+    try {
+      pattern = Pattern.compile(type);
+    } catch (PatternSyntaxException e) {
+      throw new MojoExecutionException("Bad configuration: invalid type pattern " + type, e);
+    }
+    long matched = 0;
+    for (String referenced : index.types()) {
+      if (!pattern.matcher(referenced).matches()) {
+        continue;
+      }
+      matched++;
+      List<ReferenceIndex.Referrer> referrers = index.referrers(referenced);
+      getLog().info(referenced + " is exposed by " + referrers.size() + " API member"
+          + (referrers.size() == 1 ? "" : "s") + ":");
+      for (ReferenceIndex.Referrer referrer : referrers) {
+        getLog().info("  " + referrer.contextClass + " " + referrer.memberName);
+      }
+    }
+    if (matched == 0) {
+      getLog().info("No API members reference a type matching " + type);
+    }
+  }
+
+}
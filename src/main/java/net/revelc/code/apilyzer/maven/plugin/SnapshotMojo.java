@@ -0,0 +1,106 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.apilyzer.maven.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import net.revelc.code.apilyzer.ApiSnapshot;
+import org.apache.maven.artifact.DependencyResolutionRequiredException;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Component;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.project.MavenProjectHelper;
+
+/**
+ * Writes a snapshot of the declared public API, with the signatures of its members and the types
+ * they reference, and attaches it to the build so it can be compared with later versions by the
+ * {@code diff} goal.
+ */
+@Mojo(name = "snapshot", defaultPhase = LifecyclePhase.PACKAGE,
+    requiresDependencyResolution = ResolutionScope.COMPILE, threadSafe = true)
+public class SnapshotMojo extends AbstractApilyzerMojo {
+
+  /**
+   * The type of the attached snapshot artifact.
+   */
+  private static final String SNAPSHOT_TYPE = "snapshot";
+
+  /**
+   * The classifier of the attached snapshot artifact.
+   */
+  private static final String SNAPSHOT_CLASSIFIER = "apilyzer";
+
+  @Parameter(defaultValue = "${project}", readonly = true)
+  private MavenProject project;
+
+  @Component
+  private MavenProjectHelper projectHelper;
+
+  /**
+   * The absolute path for the API snapshot file.
+   *
+   * @since 1.4.0
+   */
+  @Parameter(alias = "snapshotFile", property = "apilyzer.snapshotFile",
+      defaultValue = "${project.build.directory}/apilyzer.snapshot")
+  private String snapshotFile;
+
+  /**
+   * Controls whether the snapshot is attached to the build, with the classifier {@code apilyzer}
+   * and the type {@code snapshot}, so it is installed and deployed with the project's artifacts.
+   *
+   * @since 1.4.0
+   */
+  @Parameter(alias = "attach", property = "apilyzer.attach", defaultValue = "true")
+  private boolean attach;
+
+  @Override
+  public void execute() throws MojoExecutionException {
+
+    if (skip) {
+      getLog().info("APILyzer execution skipped");
+      return;
+    }
+
+    List<String> classPathElements;
+    try {
+      classPathElements = project.getCompileClasspathElements();
+    } catch (DependencyResolutionRequiredException e) {
+      throw new MojoExecutionException("Error resolving project classpath", e);
+    }
+
+    ApiSnapshot snapshot = takeSnapshot(classPathElements);
+
+    try {
+      writeReportFile(snapshotFile, snapshot::write);
+    } catch (IOException e) {
+      throw new MojoExecutionException("Bad configuration: cannot create specified snapshotFile",
+          e);
+    }
+    getLog().info("APILyzer wrote a snapshot of " + snapshot.types().size()
+        + " public API types to " + snapshotFile);
+
+    if (attach) {
+      projectHelper.attachArtifact(project, SNAPSHOT_TYPE, SNAPSHOT_CLASSIFIER,
+          new File(snapshotFile));
+    }
+  }
+
+}
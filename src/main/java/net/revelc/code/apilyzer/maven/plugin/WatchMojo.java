@@ -0,0 +1,322 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.apilyzer.maven.plugin;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import net.revelc.code.apilyzer.Apilyzer;
+import net.revelc.code.apilyzer.PublicApi;
+import net.revelc.code.apilyzer.ReferenceIndex;
+import net.revelc.code.apilyzer.util.ClassEntry;
+import net.revelc.code.apilyzer.util.ClassPathScanner;
+import net.revelc.code.apilyzer.util.ClassUtils;
+import org.apache.maven.artifact.DependencyResolutionRequiredException;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * Analyzes the declared public API, like the {@code analyze} goal, and then watches the project's
+ * output directory, re-analyzing whenever classes are recompiled until the build is interrupted.
+ * The dependencies are scanned and loaded only once. After a change, only the changed classes, and
+ * the public API classes which reference or extend them, are checked again, and the report is
+ * updated. The build is never failed by the problems found, and if the changed classes cannot be
+ * loaded, for example because they are still being written, the error is logged and they are
+ * checked again after the next change.
+ */
+@Mojo(name = "watch", requiresDependencyResolution = ResolutionScope.COMPILE, threadSafe = true)
+public class WatchMojo extends AbstractApilyzerMojo {
+
+  // how long to wait for further changes after one, so a whole recompilation is handled at once
+  private static final long QUIET_PERIOD_MILLIS = 100;
+
+  @Parameter(defaultValue = "${project}", readonly = true)
+  private MavenProject project;
+
+  /**
+   * The absolute path for the report file, which is rewritten after every change.
+   *
+   * @since 1.4.0
+   */
+  @Parameter(alias = "outputFile", property = "apilyzer.outputFile",
+      defaultValue = "${project.build.directory}/apilyzer.txt")
+  private String outputFile;
+
+  // the formatted problems found in each public API class, and the types it depends on, as of the
+  // last time it was checked
+  private final Map<String, List<String>> problems = new HashMap<>();
+  private final Map<String, Set<String>> dependencies = new HashMap<>();
+
+  // the public API classes from the dependencies, which do not change while watching
+  private List<ClassEntry> dependencyApiEntries;
+
+  // the problems found in the class being checked
+  private List<String> currentProblems;
+
+  @Override
+  public void execute() throws MojoExecutionException {
+
+    if (skip) {
+      getLog().info("APILyzer execution skipped");
+      return;
+    }
+
+    List<String> dependencyElements;
+    try {
+      dependencyElements = new ArrayList<>(project.getCompileClasspathElements());
+    } catch (DependencyResolutionRequiredException e) {
+      throw new MojoExecutionException("Error resolving project classpath", e);
+    }
+    String outputDirectoryName = project.getBuild().getOutputDirectory();
+    dependencyElements.remove(outputDirectoryName);
+    Path outputDirectory = Paths.get(outputDirectoryName).toAbsolutePath().normalize();
+
+    URLClassLoader dependencyLoader;
+    try {
+      dependencyLoader = ClassUtils.getClassLoader(dependencyElements);
+    } catch (IllegalArgumentException e) {
+      throw new MojoExecutionException("Error resolving project classpath", e);
+    }
+
+    URLClassLoader loader = null;
+    try (dependencyLoader;
+        WatchService watcher = outputDirectory.getFileSystem().newWatchService()) {
+      Files.createDirectories(outputDirectory);
+      register(watcher, outputDirectory);
+
+      Set<String> apiNames = Collections.emptySet();
+      // the classes changed since they were last checked successfully, or null if not known
+      Set<String> changed = null;
+      while (true) {
+        long start = System.nanoTime();
+
+        // the project's classes must be loaded again after every change, by a new class loader
+        URLClassLoader previousLoader = loader;
+        loader = ClassUtils.getClassLoader(Collections.singletonList(outputDirectoryName),
+            dependencyLoader);
+        try {
+          PublicApi publicApi = discover(loader, outputDirectory, dependencyElements);
+          int checked = update(publicApi, apiNames, changed);
+          long problemCount = writeReport(publicApi);
+          if (previousLoader != null) {
+            previousLoader.close();
+          }
+          apiNames = publicApi.nameStream().collect(Collectors.toSet());
+          changed = new HashSet<>();
+
+          getLog().info("APILyzer checked " + checked + " of " + apiNames.size()
+              + " public API classes in "
+              + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms, and found "
+              + problemCount + " problem" + (problemCount == 1 ? "" : "s") + ". See " + outputFile
+              + " for details.");
+        } catch (RuntimeException | LinkageError e) {
+          // classes may disappear, or be only partly written, while they are being recompiled, so
+          // keep the previous results and check the same changes again along with the next ones
+          getLog().error("APILyzer was unable to check the changed classes; " + outputFile
+              + " was not updated", e);
+          loader.close();
+          loader = previousLoader;
+        }
+        getLog().info("Watching " + outputDirectory + " for changes; interrupt the build to stop");
+
+        Set<String> changes = awaitChanges(watcher, outputDirectory);
+        if (changed == null || changes == null) {
+          changed = null;
+        } else {
+          changed.addAll(changes);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (IOException e) {
+      throw new MojoExecutionException("Unable to watch " + outputDirectory, e);
+    } finally {
+      if (loader != null) {
+        try {
+          loader.close();
+        } catch (IOException e) {
+          getLog().debug("Unable to close class loader", e);
+        }
+      }
+    }
+  }
+
+  private PublicApi discover(ClassLoader loader, Path outputDirectory,
+      List<String> dependencyElements) {
+    if (dependencyApiEntries != null) {
+      return PublicApi.fromClassPath(loader,
+          Stream.concat(ClassPathScanner.directoryEntries(outputDirectory),
+              dependencyApiEntries.stream()),
+          includes, excludes, includeAnnotations, excludeAnnotations);
+    }
+
+    // the first time, scan the dependencies, and remember which of their classes are in the API
+    Set<String> projectClasses = new HashSet<>();
+    PublicApi publicApi = PublicApi.fromClassPath(loader,
+        Stream.concat(ClassPathScanner.directoryEntries(outputDirectory)
+            .peek(entry -> projectClasses.add(entry.name)), classEntries(dependencyElements)),
+        includes, excludes, includeAnnotations, excludeAnnotations);
+    dependencyApiEntries = publicApi.nameStream().filter(name -> !projectClasses.contains(name))
+        .map(ClassEntry::named).collect(Collectors.toList());
+    return publicApi;
+  }
+
+  /**
+   * Check the public API classes affected by the given changes, or all of them if not known, and
+   * return the number of classes checked.
+   */
+  private int update(PublicApi publicApi, Set<String> previousApiNames, Set<String> changed)
+      throws MojoExecutionException {
+    Set<String> apiNames = publicApi.nameStream().collect(Collectors.toSet());
+    problems.keySet().retainAll(apiNames);
+    dependencies.keySet().retainAll(apiNames);
+
+    // a type affects the classes depending on it if it changed, or joined or left the public API
+    Set<String> affected = new HashSet<>();
+    if (changed != null) {
+      affected.addAll(changed);
+      apiNames.stream().filter(name -> !previousApiNames.contains(name)).forEach(affected::add);
+      previousApiNames.stream().filter(name -> !apiNames.contains(name)).forEach(affected::add);
+    }
+
+    List<Class<?>> toCheck = publicApi.classStream().filter(clazz -> {
+      Set<String> depends = dependencies.get(clazz.getName());
+      return changed == null || depends == null || affected.contains(clazz.getName())
+          || !Collections.disjoint(depends, affected);
+    }).collect(Collectors.toList());
+
+    Apilyzer apilyzer =
+        newApilyzer(publicApi, problem -> currentProblems.add(formatProblem(problem)));
+    for (Class<?> clazz : toCheck) {
+      List<String> classProblems = new ArrayList<>();
+      currentProblems = classProblems;
+      ReferenceIndex referenceIndex = new ReferenceIndex();
+      apilyzer.setReferenceIndex(referenceIndex);
+      apilyzer.check(Stream.of(clazz));
+
+      Set<String> depends = new HashSet<>(referenceIndex.types());
+      addSupertypes(clazz, depends);
+      problems.put(clazz.getName(), classProblems);
+      dependencies.put(clazz.getName(), depends);
+    }
+    return toCheck.size();
+  }
+
+  // inherited members are checked with their subclasses, so those depend on their supertypes
+  private static void addSupertypes(Class<?> clazz, Set<String> names) {
+    Class<?> superclass = clazz.getSuperclass();
+    if (superclass != null && names.add(superclass.getName())) {
+      addSupertypes(superclass, names);
+    }
+    for (Class<?> iface : clazz.getInterfaces()) {
+      if (names.add(iface.getName())) {
+        addSupertypes(iface, names);
+      }
+    }
+  }
+
+  private long writeReport(PublicApi publicApi) throws MojoExecutionException {
+    long problemCount =
+        publicApi.classStream().mapToLong(clazz -> problems.get(clazz.getName()).size()).sum();
+    try {
+      writeReportFile(outputFile, path -> {
+        try (PrintStream out = new PrintStream(path.toFile(), UTF_8)) {
+          writeReportHeader(out, publicApi.nameStream());
+          for (Class<?> clazz : (Iterable<Class<?>>) publicApi.classStream()::iterator) {
+            problems.get(clazz.getName()).forEach(out::print);
+          }
+          writeReportFooter(out, problemCount);
+        }
+      });
+    } catch (IOException e) {
+      throw new MojoExecutionException("Bad configuration: cannot create specified outputFile", e);
+    }
+    return problemCount;
+  }
+
+  private static void register(WatchService watcher, Path directory) throws IOException {
+    List<Path> directories;
+    try (Stream<Path> walk = Files.walk(directory)) {
+      directories = walk.filter(Files::isDirectory).collect(Collectors.toList());
+    }
+    for (Path dir : directories) {
+      dir.register(watcher, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+    }
+  }
+
+  /**
+   * Wait for classes to change, and return their names, or null if they are not known.
+   */
+  private static Set<String> awaitChanges(WatchService watcher, Path outputDirectory)
+      throws IOException, InterruptedException {
+    Set<String> changed = new HashSet<>();
+    boolean unknown = false;
+    WatchKey key = watcher.take();
+    while (key != null) {
+      Path dir = (Path) key.watchable();
+      for (WatchEvent<?> event : key.pollEvents()) {
+        if (event.kind() == OVERFLOW) {
+          unknown = true;
+          continue;
+        }
+        Path file = dir.resolve((Path) event.context());
+        if (event.kind() == ENTRY_CREATE && Files.isDirectory(file)) {
+          register(watcher, file);
+          try (Stream<Path> walk = Files.walk(file)) {
+            walk.map(f -> ClassPathScanner.classNameOf(outputDirectory, f))
+                .filter(name -> name != null).forEach(changed::add);
+          }
+          continue;
+        }
+        String name = ClassPathScanner.classNameOf(outputDirectory, file);
+        if (name != null) {
+          changed.add(name);
+        } else if (event.kind() == ENTRY_DELETE && !file.getFileName().toString().contains(".")) {
+          // possibly a whole package was deleted
+          unknown = true;
+        }
+      }
+      key.reset();
+      key = watcher.poll(QUIET_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+    }
+    return unknown ? null : changed;
+  }
+
+}
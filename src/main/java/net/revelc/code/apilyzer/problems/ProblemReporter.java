@@ -92,4 +92,21 @@ public class ProblemReporter {
     consumer.accept(p);
   }
 
+  /**
+   * Report a problem with a superclass, or with one of the supertypes it exposes.
+   */
+  public void superclass(Class<?> contextClass, Class<?> nonPublicSupertype) {
+    Problem p = new Problem(ProblemType.SUPERCLASS, contextClass, "extends", nonPublicSupertype);
+    consumer.accept(p);
+  }
+
+  /**
+   * Report a problem with an interface, or with one of the supertypes it exposes.
+   */
+  public void interfaceType(Class<?> contextClass, Class<?> nonPublicInterface) {
+    Problem p =
+        new Problem(ProblemType.INTERFACE, contextClass, "implements", nonPublicInterface);
+    consumer.accept(p);
+  }
+
 }
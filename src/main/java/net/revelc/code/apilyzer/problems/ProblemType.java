@@ -52,6 +52,17 @@ public enum ProblemType {
   /**
    * A method exception's type isn't in the public API or in the allowed set.
    */
-  METHOD_EXCEPTION
+  METHOD_EXCEPTION,
+
+  /**
+   * A superclass, or one of its supertypes, isn't in the public API or in the allowed set.
+   */
+  SUPERCLASS,
+
+  /**
+   * An implemented or extended interface, or one of its supertypes, isn't in the public API or in
+   * the allowed set.
+   */
+  INTERFACE
 
 }
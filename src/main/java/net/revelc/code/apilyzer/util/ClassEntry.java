@@ -0,0 +1,84 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.apilyzer.util;
+
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A class found on the class path, along with the metadata needed to decide whether it is part of
+ * the public API without loading it, if that metadata is known.
+ */
+public class ClassEntry {
+
+  private static final int UNKNOWN = -1;
+
+  public final String name;
+  private final int modifiers;
+  private final List<String> annotations;
+
+  private ClassEntry(String name, int modifiers, List<String> annotations) {
+    this.name = name;
+    this.modifiers = modifiers;
+    this.annotations = annotations;
+  }
+
+  /**
+   * Create an entry for which only the class name is known.
+   */
+  public static ClassEntry named(String name) {
+    return new ClassEntry(name, UNKNOWN, null);
+  }
+
+  /**
+   * Create an entry with known metadata, read from the class file.
+   *
+   * @param modifiers the access flags of the class, as they would be reported by
+   *        {@link Class#getModifiers()}
+   * @param annotations the fully-qualified names of the runtime-visible annotation types on the
+   *        class
+   */
+  public static ClassEntry withMetadata(String name, int modifiers, List<String> annotations) {
+    return new ClassEntry(name, modifiers, Collections.unmodifiableList(annotations));
+  }
+
+  /**
+   * Returns true if the modifiers and annotations of this class are known without loading it.
+   */
+  public boolean hasMetadata() {
+    return modifiers != UNKNOWN;
+  }
+
+  /**
+   * Returns true if the metadata is known, and shows the class to be neither public nor protected.
+   */
+  public boolean isKnownNotPublicOrProtected() {
+    return hasMetadata() && (modifiers & (Modifier.PUBLIC | Modifier.PROTECTED)) == 0;
+  }
+
+  int modifiers() {
+    return modifiers;
+  }
+
+  /**
+   * Returns the fully-qualified names of the runtime-visible annotation types on this class, or
+   * null if they are not known.
+   */
+  public List<String> annotations() {
+    return annotations;
+  }
+
+}
@@ -0,0 +1,255 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.apilyzer.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.stream.Stream;
+import net.revelc.code.apilyzer.events.ClassPathElementScanEvent;
+
+/**
+ * Lazily enumerates the classes on a class path, one class path element at a time, without holding
+ * the contents of the whole class path in memory.
+ */
+public class ClassPathScanner {
+
+  private static final String CLASS_SUFFIX = ".class";
+
+  private final Set<Path> scanned = new HashSet<>();
+  private final Path jarIndexCache;
+
+  private ClassPathScanner(Path jarIndexCache) {
+    this.jarIndexCache = jarIndexCache;
+  }
+
+  /**
+   * Return a stream of the classes in the given class path elements, and in any jars referenced
+   * from the {@code Class-Path} attribute of their manifests. The stream must be closed after use,
+   * and must not be consumed in parallel. A class may appear more than once if it is present in
+   * more than one class path element.
+   *
+   * <p>If a class path element contains a prebuilt index at {@value JandexIndex#RESOURCE}, its
+   * classes are read from that index instead of being scanned, and come with the metadata needed to
+   * decide whether they are part of the public API without loading them. Otherwise, if a jar index
+   * cache directory is given, the classes in jars come with the same metadata. See
+   * {@link JandexIndex} and {@link JarIndex}.
+   *
+   * @param jarIndexCache the cache directory for jar indexes, or null to only enumerate the names
+   *        of the classes in jars
+   */
+  public static Stream<ClassEntry> classEntries(List<String> paths, Path jarIndexCache) {
+    ClassPathScanner scanner = new ClassPathScanner(jarIndexCache);
+    return paths.stream().map(Paths::get).flatMap(scanner::scan);
+  }
+
+  /**
+   * Return a stream of the classes in the given directory, always scanning it even if it contains a
+   * prebuilt index, which may be out of date while classes are being recompiled. The stream must be
+   * closed after use.
+   */
+  public static Stream<ClassEntry> directoryEntries(Path directory) {
+    return scanDirectory(directory.toAbsolutePath().normalize(), false);
+  }
+
+  /**
+   * Returns the name of the class in the given file, or null if it is not a class file, or is not
+   * in the given class path directory.
+   */
+  public static String classNameOf(Path directory, Path file) {
+    if (!file.startsWith(directory)) {
+      return null;
+    }
+    return classNameOf(directory.relativize(file).toString(),
+        directory.getFileSystem().getSeparator());
+  }
+
+  private Stream<ClassEntry> scan(Path element) {
+    Path absolute = element.toAbsolutePath().normalize();
+    if (!scanned.add(absolute)) {
+      return Stream.empty();
+    }
+    if (Files.isDirectory(absolute)) {
+      return scanDirectory(absolute, true);
+    }
+    if (Files.isRegularFile(absolute)) {
+      return scanJar(absolute);
+    }
+    return Stream.empty();
+  }
+
+  private static Stream<ClassEntry> scanDirectory(Path directory, boolean usePrebuiltIndex) {
+    ElementScan scan = new ElementScan(directory, null);
+    Path prebuiltIndex = directory.resolve(JandexIndex.RESOURCE);
+    if (usePrebuiltIndex && Files.isRegularFile(prebuiltIndex)) {
+      try (InputStream in = Files.newInputStream(prebuiltIndex)) {
+        return scan.track(JandexIndex.read(in).stream());
+      } catch (IOException | RuntimeException e) {
+        // unreadable or unsupported index; fall back to scanning the directory
+      }
+    }
+    Stream<Path> files;
+    try {
+      files = Files.walk(directory);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to scan class path directory " + directory, e);
+    }
+    String separator = directory.getFileSystem().getSeparator();
+    return scan.track(files.map(file -> directory.relativize(file).toString())
+        .map(resource -> classNameOf(resource, separator)).filter(Objects::nonNull)
+        .map(ClassEntry::named));
+  }
+
+  private Stream<ClassEntry> scanJar(Path jar) {
+    JarFile jarFile;
+    try {
+      jarFile = new JarFile(jar.toFile());
+    } catch (IOException e) {
+      // not a jar file, or unreadable; skip it, as the class loader would
+      return Stream.empty();
+    }
+    ElementScan scan = new ElementScan(jar, jarFile);
+    List<Path> manifestClassPath;
+    try {
+      manifestClassPath = manifestClassPath(jar, jarFile.getManifest());
+    } catch (IOException e) {
+      manifestClassPath = new ArrayList<>();
+    }
+    Stream<ClassEntry> entries = null;
+    JarEntry prebuiltIndex = jarFile.getJarEntry(JandexIndex.RESOURCE);
+    if (prebuiltIndex != null) {
+      try (InputStream in = jarFile.getInputStream(prebuiltIndex)) {
+        entries = JandexIndex.read(in).stream();
+      } catch (IOException | RuntimeException e) {
+        // unreadable or unsupported index; fall back to scanning the jar
+      }
+    }
+    if (entries == null && jarIndexCache != null) {
+      try {
+        entries = JarIndex.load(jar, jarFile, jarIndexCache, name -> classNameOf(name, "/"))
+            .entries().stream();
+      } catch (IOException e) {
+        // fall back to enumerating the names of the classes
+      }
+    }
+    if (entries == null) {
+      entries = jarFile.stream().map(entry -> classNameOf(entry.getName(), "/"))
+          .filter(Objects::nonNull).map(ClassEntry::named);
+    }
+    entries = scan.track(entries);
+    // finish with this jar as soon as its entries are exhausted, before scanning the jars it
+    // references
+    return Stream.concat(entries, Stream.of(manifestClassPath).flatMap(children -> {
+      scan.run();
+      return children.stream().flatMap(this::scan);
+    }));
+  }
+
+  /**
+   * Tracks the enumeration of a single class path element, closing it when finished, and recording
+   * a flight recorder event if enabled.
+   */
+  private static class ElementScan implements Runnable {
+
+    private final Path element;
+    private final Closeable resource;
+    private final ClassPathElementScanEvent event = new ClassPathElementScanEvent();
+    private boolean finished = false;
+
+    ElementScan(Path element, Closeable resource) {
+      this.element = element;
+      this.resource = resource;
+      event.begin();
+    }
+
+    Stream<ClassEntry> track(Stream<ClassEntry> classEntries) {
+      if (event.isEnabled()) {
+        classEntries = classEntries.peek(entry -> event.entries++);
+      }
+      return classEntries.onClose(this);
+    }
+
+    @Override
+    public void run() {
+      if (finished) {
+        return;
+      }
+      finished = true;
+      if (event.shouldCommit()) {
+        event.element = element.toString();
+        event.commit();
+      }
+      if (resource != null) {
+        try {
+          resource.close();
+        } catch (IOException e) {
+          throw new UncheckedIOException("Unable to close " + element, e);
+        }
+      }
+    }
+
+  }
+
+  private static List<Path> manifestClassPath(Path jar, Manifest manifest) {
+    List<Path> result = new ArrayList<>();
+    if (manifest == null) {
+      return result;
+    }
+    String classPath = manifest.getMainAttributes().getValue(Attributes.Name.CLASS_PATH);
+    if (classPath == null) {
+      return result;
+    }
+    URI base = jar.toUri();
+    for (String entry : classPath.trim().split("\\s+")) {
+      if (entry.isEmpty()) {
+        continue;
+      }
+      try {
+        URI uri = base.resolve(new URI(entry));
+        if ("file".equals(uri.getScheme())) {
+          result.add(Paths.get(uri));
+        }
+      } catch (URISyntaxException | IllegalArgumentException e) {
+        // ignore invalid entries, as the class loader would
+      }
+    }
+    return result;
+  }
+
+  private static String classNameOf(String resource, String separator) {
+    if (!resource.endsWith(CLASS_SUFFIX) || resource.startsWith("META-INF")
+        || resource.endsWith("module-info.class")) {
+      return null;
+    }
+    return resource.substring(0, resource.length() - CLASS_SUFFIX.length()).replace(separator,
+        ".");
+  }
+
+}
@@ -14,9 +14,7 @@
 
 package net.revelc.code.apilyzer.util;
 
-import com.google.common.reflect.ClassPath;
 import java.io.File;
-import java.io.IOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
@@ -49,11 +47,25 @@ public class ClassUtils {
   };
 
   /**
-   * Construct a class path object from a list of local file system paths.
+   * Construct a class loader from a list of local file system paths.
    */
-  public static ClassPath getClassPath(List<String> paths) throws IOException {
-    URL[] urls = paths.stream().map(TO_URL).toArray(URL[]::new);
-    return ClassPath.from(new URLClassLoader(urls, null));
+  public static URLClassLoader getClassLoader(List<String> paths) {
+    return getClassLoader(paths, null);
+  }
+
+  /**
+   * Construct a class loader from a list of local file system paths, which delegates to the given
+   * parent class loader first.
+   */
+  public static URLClassLoader getClassLoader(List<String> paths, ClassLoader parent) {
+    return new URLClassLoader(getUrls(paths), parent);
+  }
+
+  /**
+   * Convert a list of local file system paths to URLs, for a class loader.
+   */
+  public static URL[] getUrls(List<String> paths) {
+    return paths.stream().map(TO_URL).toArray(URL[]::new);
   }
 
   /**
@@ -0,0 +1,110 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.apilyzer.util;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A SHA-256 digest over the inputs of an analysis, used to tell whether anything changed since it
+ * was last run. Files are identified by their path, size and modification time, rather than by
+ * their contents, so computing a fingerprint never needs to read the class path.
+ */
+public class Fingerprint {
+
+  private final MessageDigest sha;
+
+  /**
+   * Start an empty fingerprint.
+   */
+  public Fingerprint() {
+    try {
+      sha = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Add a named value, such as a configuration option, to this fingerprint.
+   */
+  public Fingerprint add(String name, Object value) {
+    update(name);
+    update(String.valueOf(value));
+    return this;
+  }
+
+  /**
+   * Add a class path element to this fingerprint. A directory is added with the path, size and
+   * modification time of every file in it, and a missing element is added by its path only.
+   */
+  public Fingerprint addPath(String element) throws IOException {
+    Path path = Paths.get(element);
+    update(element);
+    if (Files.isDirectory(path)) {
+      List<Path> files;
+      try (Stream<Path> walk = Files.walk(path)) {
+        files = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+      }
+      for (Path file : files) {
+        update(path.relativize(file).toString());
+        addAttributes(file);
+      }
+    } else if (Files.exists(path)) {
+      addAttributes(path);
+    }
+    return this;
+  }
+
+  private void addAttributes(Path file) throws IOException {
+    BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+    update(Long.toString(attributes.size()));
+    update(Long.toString(attributes.lastModifiedTime().toMillis()));
+  }
+
+  private void update(String s) {
+    byte[] bytes = s.getBytes(UTF_8);
+    sha.update(Integer.toString(bytes.length).getBytes(UTF_8));
+    sha.update((byte) ':');
+    sha.update(bytes);
+  }
+
+  /**
+   * Returns the hexadecimal digest of everything added so far.
+   */
+  @Override
+  public String toString() {
+    StringBuilder hex = new StringBuilder();
+    try {
+      for (byte b : ((MessageDigest) sha.clone()).digest()) {
+        hex.append(String.format("%02x", b));
+      }
+    } catch (CloneNotSupportedException e) {
+      throw new IllegalStateException(e);
+    }
+    return hex.toString();
+  }
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.apilyzer.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import org.jboss.jandex.AnnotationInstance;
+import org.jboss.jandex.ClassInfo;
+import org.jboss.jandex.IndexReader;
+
+/**
+ * Reads the prebuilt class indexes which some jars and output directories contain, as created by
+ * the Jandex tools, so their classes can be enumerated without scanning them.
+ */
+public class JandexIndex {
+
+  /**
+   * The location of a prebuilt index, relative to the root of a class path element.
+   */
+  public static final String RESOURCE = "META-INF/jandex.idx";
+
+  private JandexIndex() {
+    // do not permit instantiation
+  }
+
+  /**
+   * Read the classes in a prebuilt index, sorted by name, with their access flags and the
+   * runtime-visible annotations declared on them.
+   */
+  public static List<ClassEntry> read(InputStream in) throws IOException {
+    List<ClassEntry> entries = new ArrayList<>();
+    for (ClassInfo info : new IndexReader(in).read().getKnownClasses()) {
+      String name = info.name().toString();
+      if (name.endsWith("module-info")) {
+        continue;
+      }
+      List<String> annotations = new ArrayList<>();
+      for (AnnotationInstance annotation : info.declaredAnnotations()) {
+        if (annotation.runtimeVisible()) {
+          annotations.add(annotation.name().toString());
+        }
+      }
+      // the class file flags of a nested class do not say whether it is protected or private, so
+      // treat it as possibly public, to be decided when it is loaded
+      int modifiers =
+          info.nestingType() == ClassInfo.NestingType.TOP_LEVEL ? info.flags() : Modifier.PUBLIC;
+      entries.add(ClassEntry.withMetadata(name, modifiers, annotations));
+    }
+    entries.sort(Comparator.comparing(entry -> entry.name));
+    return entries;
+  }
+
+}
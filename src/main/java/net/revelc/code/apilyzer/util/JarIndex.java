@@ -0,0 +1,240 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.apilyzer.util;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * The classes in a jar, along with the metadata needed to find the public API without loading
+ * them. Indexes are stored in a shared cache directory, keyed by a SHA-256 digest of the jar's
+ * central directory, which lists the name, size and CRC-32 checksum of each entry. The key
+ * identifies the jar's contents without reading them, so each released jar is only indexed once,
+ * and the index is reused by every build.
+ */
+public class JarIndex {
+
+  private static final int MAGIC = 0x4150494a; // "APIJ"
+  private static final int VERSION = 1;
+
+  // the digests of jars already seen by this JVM, keyed by path, size and modification time
+  private static final Map<String, String> DIGESTS = new ConcurrentHashMap<>();
+
+  private final List<ClassEntry> entries;
+
+  private JarIndex(List<ClassEntry> entries) {
+    this.entries = entries;
+  }
+
+  /**
+   * Returns the classes in the indexed jar.
+   */
+  public List<ClassEntry> entries() {
+    return entries;
+  }
+
+  /**
+   * Return the index of the given jar, from the cache directory if it has already been indexed, or
+   * by reading its class files and storing the result in the cache directory otherwise.
+   *
+   * @param classNameFilter a filter on resource names in the jar, which returns the class name, or
+   *        null if the resource should not be indexed
+   */
+  public static JarIndex load(Path jar, JarFile jarFile, Path cacheDirectory,
+      Function<String, String> classNameFilter) throws IOException {
+    String digest = digest(jar, jarFile);
+    Path cacheFile = cacheDirectory.resolve("jar-index").resolve(digest.substring(0, 2))
+        .resolve(digest + ".idx");
+    if (Files.isRegularFile(cacheFile)) {
+      try {
+        return read(cacheFile);
+      } catch (IOException e) {
+        // fall through and rebuild a corrupt or outdated cache entry
+      }
+    }
+    JarIndex index = build(jarFile, classNameFilter);
+    try {
+      CacheFiles.writeAtomically(cacheFile, index::write);
+    } catch (IOException e) {
+      // the cache is only an optimization; the jar was still indexed
+    }
+    return index;
+  }
+
+  private static String digest(Path jar, JarFile jarFile) throws IOException {
+    String key = jar + ":" + Files.size(jar) + ":" + Files.getLastModifiedTime(jar).toMillis();
+    String digest = DIGESTS.get(key);
+    if (digest == null) {
+      MessageDigest sha;
+      try {
+        sha = MessageDigest.getInstance("SHA-256");
+      } catch (NoSuchAlgorithmException e) {
+        throw new IllegalStateException(e);
+      }
+      // the central directory was already read when the jar was opened, so this reads no entries
+      ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES * 2);
+      for (JarEntry jarEntry : (Iterable<JarEntry>) jarFile.stream()::iterator) {
+        sha.update(jarEntry.getName().getBytes(UTF_8));
+        buffer.clear();
+        buffer.putLong(jarEntry.getSize()).putLong(jarEntry.getCrc());
+        sha.update(buffer.array());
+      }
+      StringBuilder hex = new StringBuilder();
+      for (byte b : sha.digest()) {
+        hex.append(String.format("%02x", b));
+      }
+      digest = hex.toString();
+      DIGESTS.put(key, digest);
+    }
+    return digest;
+  }
+
+  private static JarIndex build(JarFile jarFile, Function<String, String> classNameFilter)
+      throws IOException {
+    List<ClassEntry> entries = new ArrayList<>();
+    for (JarEntry jarEntry : (Iterable<JarEntry>) jarFile.stream()::iterator) {
+      String className = classNameFilter.apply(jarEntry.getName());
+      if (className == null) {
+        continue;
+      }
+      try (InputStream in = jarFile.getInputStream(jarEntry)) {
+        entries.add(readClass(className, in));
+      } catch (RuntimeException e) {
+        // ASM could not parse the class; leave it to be loaded, as it would be without an index
+        entries.add(ClassEntry.named(className));
+      }
+    }
+    return new JarIndex(entries);
+  }
+
+  private static ClassEntry readClass(String className, InputStream in) throws IOException {
+    int[] modifiers = new int[1];
+    List<String> annotations = new ArrayList<>();
+    new ClassReader(in).accept(new ClassVisitor(Opcodes.ASM9) {
+      private String internalName;
+
+      @Override
+      public void visit(int version, int access, String name, String signature, String superName,
+          String[] interfaces) {
+        internalName = name;
+        modifiers[0] = access;
+      }
+
+      @Override
+      public void visitInnerClass(String name, String outerName, String innerName, int access) {
+        // nested classes take their modifiers, such as protected, from the InnerClasses attribute
+        if (name.equals(internalName)) {
+          modifiers[0] = access;
+        }
+      }
+
+      @Override
+      public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+        if (visible) {
+          annotations.add(Type.getType(descriptor).getClassName());
+        }
+        return null;
+      }
+    }, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+    return ClassEntry.withMetadata(className, modifiers[0] & 0xffff, annotations);
+  }
+
+  private void write(DataOutputStream out) throws IOException {
+    Map<String, Integer> annotationIds = new HashMap<>();
+    List<String> annotationNames = new ArrayList<>();
+    for (ClassEntry entry : entries) {
+      if (entry.hasMetadata()) {
+        for (String annotation : entry.annotations()) {
+          if (!annotationIds.containsKey(annotation)) {
+            annotationIds.put(annotation, annotationNames.size());
+            annotationNames.add(annotation);
+          }
+        }
+      }
+    }
+
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    out.writeInt(annotationNames.size());
+    for (String annotation : annotationNames) {
+      out.writeUTF(annotation);
+    }
+    out.writeInt(entries.size());
+    for (ClassEntry entry : entries) {
+      out.writeUTF(entry.name);
+      out.writeInt(entry.modifiers());
+      if (entry.hasMetadata()) {
+        out.writeShort(entry.annotations().size());
+        for (String annotation : entry.annotations()) {
+          out.writeInt(annotationIds.get(annotation));
+        }
+      }
+    }
+  }
+
+  private static JarIndex read(Path cacheFile) throws IOException {
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(cacheFile)))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        throw new IOException("Unrecognized jar index cache file: " + cacheFile);
+      }
+      String[] annotationNames = new String[in.readInt()];
+      for (int i = 0; i < annotationNames.length; i++) {
+        annotationNames[i] = in.readUTF();
+      }
+      int count = in.readInt();
+      List<ClassEntry> entries = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        String name = in.readUTF();
+        int modifiers = in.readInt();
+        if (modifiers < 0) {
+          entries.add(ClassEntry.named(name));
+          continue;
+        }
+        int annotationCount = in.readUnsignedShort();
+        List<String> annotations = new ArrayList<>(annotationCount);
+        for (int j = 0; j < annotationCount; j++) {
+          annotations.add(annotationNames[in.readInt()]);
+        }
+        entries.add(ClassEntry.withMetadata(name, modifiers, annotations));
+      }
+      return new JarIndex(entries);
+    }
+  }
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.apilyzer.util;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.module.ModuleDescriptor;
+import java.net.URI;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The set of packages exported by the Java SE modules of the running JDK. These are the packages
+ * which are always allowed to be referenced by a public API.
+ */
+public class JdkExports {
+
+  private static final int MAGIC = 0x41504a58; // "APJX"
+  private static final int VERSION = 1;
+
+  private static volatile JdkExports instance;
+
+  private final Set<String> packages;
+
+  private JdkExports(Set<String> packages) {
+    this.packages = packages;
+  }
+
+  /**
+   * Return the exported packages of the running JDK. These are read from the cache directory, if
+   * one is given and it contains an entry for the running JDK. Otherwise, they are read from the
+   * module descriptors in the {@code jrt:} file system, and written to the cache directory for
+   * later builds.
+   */
+  public static JdkExports load(Path cacheDirectory) {
+    JdkExports result = instance;
+    if (result != null) {
+      return result;
+    }
+    synchronized (JdkExports.class) {
+      if (instance == null) {
+        instance = new JdkExports(readOrBuild(cacheDirectory));
+      }
+      return instance;
+    }
+  }
+
+  /**
+   * Returns true if the class with the given fully-qualified name is in an exported package.
+   */
+  public boolean exports(String fqName) {
+    int lastDot = fqName.lastIndexOf('.');
+    return lastDot > 0 && packages.contains(fqName.substring(0, lastDot));
+  }
+
+  private static Set<String> readOrBuild(Path cacheDirectory) {
+    Path cacheFile = cacheDirectory == null ? null : cacheDirectory.resolve(cacheFileName());
+    if (cacheFile != null && Files.isRegularFile(cacheFile)) {
+      try {
+        return read(cacheFile);
+      } catch (IOException e) {
+        // fall through and rebuild a corrupt or outdated cache entry
+      }
+    }
+
+    Set<String> packages;
+    try {
+      packages = fromModuleDescriptors();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to read module descriptors of the running JDK", e);
+    }
+
+    if (cacheFile != null) {
+      try {
+        CacheFiles.writeAtomically(cacheFile, out -> {
+          out.writeInt(MAGIC);
+          out.writeInt(VERSION);
+          out.writeInt(packages.size());
+          for (String pkg : new TreeSet<>(packages)) {
+            out.writeUTF(pkg);
+          }
+        });
+      } catch (IOException e) {
+        // the cache is only an optimization; the packages were still computed
+      }
+    }
+    return packages;
+  }
+
+  private static String cacheFileName() {
+    String version = Runtime.version().toString().replaceAll("[^A-Za-z0-9._-]", "_");
+    String javaHome = System.getProperty("java.home", "");
+    return "jdk-exports-" + version + "-" + Integer.toHexString(javaHome.hashCode()) + ".bin";
+  }
+
+  private static Set<String> read(Path cacheFile) throws IOException {
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(cacheFile)))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        throw new IOException("Unrecognized JDK exports cache file: " + cacheFile);
+      }
+      int count = in.readInt();
+      Set<String> packages = new HashSet<>(count * 2);
+      for (int i = 0; i < count; i++) {
+        packages.add(in.readUTF());
+      }
+      return packages;
+    }
+  }
+
+  private static Set<String> fromModuleDescriptors() throws IOException {
+    // only the Java SE modules are considered; the jdk.* modules export JDK-specific packages
+    FileSystem jrt = FileSystems.getFileSystem(URI.create("jrt:/"));
+    Set<String> packages = new HashSet<>();
+    try (DirectoryStream<Path> modules = Files.newDirectoryStream(jrt.getPath("/modules"))) {
+      for (Path module : modules) {
+        Path moduleInfo = module.resolve("module-info.class");
+        if (!module.getFileName().toString().startsWith("java.")
+            || !Files.isRegularFile(moduleInfo)) {
+          continue;
+        }
+        try (InputStream in = Files.newInputStream(moduleInfo)) {
+          ModuleDescriptor descriptor = ModuleDescriptor.read(in);
+          descriptor.exports().stream().filter(e -> !e.isQualified())
+              .forEach(e -> packages.add(e.source()));
+        }
+      }
+    }
+    return packages;
+  }
+
+}